@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2011, 2012, Philipp Christian Loewner
+ * All rights reserved.
+ * 
+ * Disclaimer:
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * This software uses parts of:
+ * jMonkeyEngine
+ * Copyright (c) 2009-2010 jMonkeyEngine
+ * All rights reserved.
+ * 
+ * For jMonkeyEngine, the same disclaimer as printed above applies.
+ */
+
+package mirrormonkey.core;
+
+import mirrormonkey.util.listeners.ManagedListener;
+import mirrormonkey.util.listeners.MapListener;
+
+/**
+ * Alternative to <tt>InstanceLifecycleListener</tt> for listeners that want to
+ * process many instance lifecycle events at once.
+ * 
+ * While the core module is batching, every instance lifecycle event is
+ * collected into a <tt>LifecycleBatch</tt>, grouped by connection and static
+ * context, and delivered when the outermost batch ends. Outside of batches,
+ * every event is delivered immediately as a batch containing only that event.
+ * 
+ * <tt>BatchedLifecycleListeners</tt> are only notified if they are added to
+ * the global <tt>ListenerConfiguration</tt> of the core module. They are
+ * notified after the <tt>InstanceLifecycleListeners</tt> for each event and in
+ * the order in which they were added.
+ * 
+ * @author Philipp Christian Loewner
+ * 
+ */
+@MapListener
+public interface BatchedLifecycleListener extends ManagedListener {
+
+	/**
+	 * Called with every instance lifecycle event that occurred since the
+	 * outermost batch began.
+	 * 
+	 * @param batch
+	 *            the collected events, grouped by connection and static
+	 *            context. Must not be kept after this method returns.
+	 */
+	public void instancesChanged(LifecycleBatch batch);
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2011, 2012, Philipp Christian Loewner
+ * All rights reserved.
+ * 
+ * Disclaimer:
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * This software uses parts of:
+ * jMonkeyEngine
+ * Copyright (c) 2009-2010 jMonkeyEngine
+ * All rights reserved.
+ * 
+ * For jMonkeyEngine, the same disclaimer as printed above applies.
+ */
+
+package mirrormonkey.core;
+
+import mirrormonkey.framework.entity.StaticEntityData;
+
+/**
+ * Decides which entities are instantiated first on the client when the
+ * instantiation budget of the <tt>ClientCoreModule</tt> is exceeded and
+ * entities have to wait for later frames.
+ * 
+ * Entities with higher priority are instantiated first. Entities with equal
+ * priority are instantiated in the order in which the server announced them.
+ * 
+ * @author Philipp Christian Loewner
+ * 
+ */
+public interface InitPriorityProvider {
+
+	/**
+	 * Returns the priority of an entity that is waiting to be instantiated.
+	 * Called once when the entity is deferred.
+	 * 
+	 * @param entityId
+	 *            ID of the entity
+	 * @param staticData
+	 *            static context in which the entity will become visible
+	 * @return the priority of the entity, higher values are instantiated
+	 *         first
+	 */
+	public int getInitPriority(int entityId, StaticEntityData staticData);
+
+}
@@ -44,7 +44,8 @@ import mirrormonkey.framework.entity.SyncEntity;
 
 /**
  * Event that is dispatched whenever an entity is made visible to a connection
- * and a client-local instance is created.
+ * and a client-local instance is created, or a dormant client-local instance
+ * is revived.
  * 
  * @author Philipp Christian Loewner
  * 
@@ -73,6 +74,13 @@ public final class InstanceInitializedEvent implements InstanceLifecycleEvent {
 	 */
 	public final ConnectionInfo<?> connection;
 
+	/**
+	 * <tt>true</tt> if the client-local instance was kept from an earlier
+	 * visibility instead of being created, <tt>false</tt> otherwise. The
+	 * state of a revived instance may be outdated.
+	 */
+	public final boolean revived;
+
 	/**
 	 * Creates a new <tt>InstanceInitializedEvent</tt> to be dispatched with the
 	 * data provided.
@@ -90,10 +98,33 @@ public final class InstanceInitializedEvent implements InstanceLifecycleEvent {
 	public InstanceInitializedEvent(SyncEntity instance,
 			DynamicEntityData dynamicData, StaticEntityData staticData,
 			ConnectionInfo<?> connection) {
+		this(instance, dynamicData, staticData, connection, false);
+	}
+
+	/**
+	 * Creates a new <tt>InstanceInitializedEvent</tt> to be dispatched with the
+	 * data provided.
+	 * 
+	 * @param instance
+	 *            local instance of the entity
+	 * @param dynamicData
+	 *            mutable data about the entity
+	 * @param staticData
+	 *            immutable data about how the entity must be handled in this
+	 *            context
+	 * @param connection
+	 *            data about the connection that the entity became visible to
+	 * @param revived
+	 *            <tt>true</tt> if a dormant client-local instance was revived
+	 */
+	public InstanceInitializedEvent(SyncEntity instance,
+			DynamicEntityData dynamicData, StaticEntityData staticData,
+			ConnectionInfo<?> connection, boolean revived) {
 		this.instance = instance;
 		this.dynamicData = dynamicData;
 		this.staticData = staticData;
 		this.connection = connection;
+		this.revived = revived;
 	}
 
 	@Override
@@ -108,7 +139,8 @@ public final class InstanceInitializedEvent implements InstanceLifecycleEvent {
 		}
 		InstanceInitializedEvent e = (InstanceInitializedEvent) o;
 		return instance == e.instance && dynamicData == e.dynamicData
-				&& staticData == e.staticData && connection == e.connection;
+				&& staticData == e.staticData && connection == e.connection
+				&& revived == e.revived;
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2011, 2012, Philipp Christian Loewner
+ * All rights reserved.
+ * 
+ * Disclaimer:
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * This software uses parts of:
+ * jMonkeyEngine
+ * Copyright (c) 2009-2010 jMonkeyEngine
+ * All rights reserved.
+ * 
+ * For jMonkeyEngine, the same disclaimer as printed above applies.
+ */
+
+package mirrormonkey.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import mirrormonkey.framework.connection.ConnectionInfo;
+import mirrormonkey.framework.entity.StaticEntityData;
+
+/**
+ * Instance lifecycle events collected while the core module was batching,
+ * grouped by connection and static context and passed to
+ * <tt>BatchedLifecycleListeners</tt>.
+ * 
+ * Groups are ordered by the first event they contain. Within a group, events
+ * are in the order in which they occurred. The ID of the entity of every
+ * event is recorded when the event is added, because an entity that is
+ * registered again later in the same batch may have been assigned a new ID
+ * by the time the batch is delivered.
+ * 
+ * @author Philipp Christian Loewner
+ * 
+ */
+public final class LifecycleBatch {
+
+	/**
+	 * Kinds of instance lifecycle events, named after the methods of
+	 * <tt>InstanceLifecycleListener</tt> that they are dispatched to.
+	 * 
+	 * @author Philipp Christian Loewner
+	 * 
+	 */
+	public static enum Kind {
+
+		/**
+		 * An <tt>InstanceInitializedEvent</tt>, the group contains the context
+		 * in which the entity became visible.
+		 */
+		INITIALIZED,
+
+		/**
+		 * An <tt>InstanceReplacedEvent</tt>, the group contains the old context.
+		 */
+		REPLACED,
+
+		/**
+		 * An <tt>InstanceReplacedEvent</tt>, the group contains the new context.
+		 */
+		REPLACING,
+
+		/**
+		 * An <tt>InstanceRemovedEvent</tt>, the group contains the context in
+		 * which the entity was visible.
+		 */
+		REMOVED
+	}
+
+	/**
+	 * Every group, in the order in which they were created.
+	 */
+	private final List<Group> groups;
+
+	/**
+	 * Groups by connection and static context.
+	 */
+	private final Map<ConnectionInfo<?>, Map<StaticEntityData, Group>> index;
+
+	/**
+	 * Read-only view of <tt>groups</tt>.
+	 */
+	private final List<Group> groupsUmod;
+
+	/**
+	 * Creates a new, empty <tt>LifecycleBatch</tt>.
+	 */
+	public LifecycleBatch() {
+		groups = new ArrayList<Group>();
+		index = new HashMap<ConnectionInfo<?>, Map<StaticEntityData, Group>>();
+		groupsUmod = Collections.unmodifiableList(groups);
+	}
+
+	/**
+	 * Adds an event to the group for its connection and static context.
+	 * 
+	 * Internal use only.
+	 * 
+	 * @param kind
+	 *            the kind of <tt>event</tt>
+	 * @param connection
+	 *            the connection for which <tt>event</tt> occurred
+	 * @param staticData
+	 *            the static context of <tt>event</tt>
+	 * @param entityId
+	 *            ID of the entity of <tt>event</tt> at the time it occurred
+	 * @param event
+	 *            the event to add
+	 */
+	public void add(Kind kind, ConnectionInfo<?> connection,
+			StaticEntityData staticData, int entityId,
+			InstanceLifecycleEvent event) {
+		Map<StaticEntityData, Group> byStatic = index.get(connection);
+		if (byStatic == null) {
+			byStatic = new HashMap<StaticEntityData, Group>();
+			index.put(connection, byStatic);
+		}
+		Group g = byStatic.get(staticData);
+		if (g == null) {
+			g = new Group(connection, staticData);
+			byStatic.put(staticData, g);
+			groups.add(g);
+		}
+		g.kinds.add(kind);
+		g.entityIds.add(Integer.valueOf(entityId));
+		g.events.add(event);
+	}
+
+	/**
+	 * @return every group of events, ordered by their first event
+	 */
+	public List<Group> getGroups() {
+		return groupsUmod;
+	}
+
+	/**
+	 * @return <tt>true</tt> if this batch does not contain any events
+	 */
+	public boolean isEmpty() {
+		return groups.isEmpty();
+	}
+
+	/**
+	 * Contains the events of a batch that occurred for the same connection and
+	 * static context.
+	 * 
+	 * @author Philipp Christian Loewner
+	 * 
+	 */
+	public static final class Group {
+
+		/**
+		 * The connection for which the events occurred.
+		 */
+		private final ConnectionInfo<?> connection;
+
+		/**
+		 * The static context of the events.
+		 */
+		private final StaticEntityData staticData;
+
+		/**
+		 * Kind of every event, in the same order as <tt>events</tt>.
+		 */
+		private final List<Kind> kinds;
+
+		/**
+		 * ID of the entity of every event at the time it occurred, in the same
+		 * order as <tt>events</tt>.
+		 */
+		private final List<Integer> entityIds;
+
+		/**
+		 * The events, in the order in which they occurred.
+		 */
+		private final List<InstanceLifecycleEvent> events;
+
+		/**
+		 * Creates a new, empty <tt>Group</tt>.
+		 * 
+		 * @param connection
+		 *            the connection for which the events occurred
+		 * @param staticData
+		 *            the static context of the events
+		 */
+		Group(ConnectionInfo<?> connection, StaticEntityData staticData) {
+			this.connection = connection;
+			this.staticData = staticData;
+			kinds = new ArrayList<Kind>();
+			entityIds = new ArrayList<Integer>();
+			events = new ArrayList<InstanceLifecycleEvent>();
+		}
+
+		/**
+		 * @return the connection for which the events occurred
+		 */
+		public ConnectionInfo<?> getConnection() {
+			return connection;
+		}
+
+		/**
+		 * @return the static context of the events
+		 */
+		public StaticEntityData getStaticData() {
+			return staticData;
+		}
+
+		/**
+		 * @return number of events in this group
+		 */
+		public int size() {
+			return events.size();
+		}
+
+		/**
+		 * @param i
+		 *            position of an event
+		 * @return the kind of the event at position <tt>i</tt>
+		 */
+		public Kind getKind(int i) {
+			return kinds.get(i);
+		}
+
+		/**
+		 * @param i
+		 *            position of an event
+		 * @return ID of the entity of the event at position <tt>i</tt> at the
+		 *         time the event occurred, which may differ from its current ID
+		 */
+		public int getEntityId(int i) {
+			return entityIds.get(i).intValue();
+		}
+
+		/**
+		 * @param i
+		 *            position of an event
+		 * @return the event at position <tt>i</tt>. Depending on its kind, this
+		 *         is an <tt>InstanceInitializedEvent</tt>, an
+		 *         <tt>InstanceReplacedEvent</tt> or an
+		 *         <tt>InstanceRemovedEvent</tt>.
+		 */
+		public InstanceLifecycleEvent getEvent(int i) {
+			return events.get(i);
+		}
+
+		/**
+		 * Passes every event of this group to the matching method of an
+		 * <tt>InstanceLifecycleListener</tt>, in order.
+		 * 
+		 * @param listener
+		 *            the listener to notify
+		 */
+		public void dispatch(InstanceLifecycleListener listener) {
+			for (int i = 0; i < events.size(); i++) {
+				switch (kinds.get(i)) {
+				case INITIALIZED:
+					listener.instanceInitialized((InstanceInitializedEvent) events
+							.get(i));
+					break;
+				case REPLACED:
+					listener.instanceReplaced((InstanceReplacedEvent) events
+							.get(i));
+					break;
+				case REPLACING:
+					listener.instanceReplacing((InstanceReplacedEvent) events
+							.get(i));
+					break;
+				default:
+					listener.instanceRemoved((InstanceRemovedEvent) events
+							.get(i));
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2011, 2012, Philipp Christian Loewner
+ * All rights reserved.
+ * 
+ * Disclaimer:
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * This software uses parts of:
+ * jMonkeyEngine
+ * Copyright (c) 2009-2010 jMonkeyEngine
+ * All rights reserved.
+ * 
+ * For jMonkeyEngine, the same disclaimer as printed above applies.
+ */
+
+package mirrormonkey.core;
+
+import mirrormonkey.framework.entity.SyncEntity;
+
+/**
+ * Marks entity classes whose client-local instances may be reused for other
+ * entities once they became invisible to the client.
+ * 
+ * Instead of constructing a new instance for every entity that becomes
+ * visible, the client will take a released instance that was created by the
+ * same constructor and call its <tt>reinitialize</tt> method with the
+ * parameters it would otherwise have passed to that constructor.
+ * 
+ * Implementations must not be referenced by application code after
+ * <tt>released</tt> was called, as they may represent a different entity
+ * from then on.
+ * 
+ * @author Philipp Christian Loewner
+ * 
+ */
+public interface PooledEntity extends SyncEntity {
+
+	/**
+	 * Called when this instance is reused for another entity. Implementations
+	 * must bring themselves to the state they would be in after the
+	 * constructor that originally created them had been called with
+	 * <tt>params</tt>.
+	 * 
+	 * @param params
+	 *            the parameters for the client-side constructor that created
+	 *            this instance
+	 */
+	public void reinitialize(Object... params);
+
+	/**
+	 * Called when this instance is no longer the local instance of an entity
+	 * and is kept for later reuse. Implementations should free resources and
+	 * detach themselves from the scene graph here.
+	 */
+	public void released();
+
+}
@@ -44,6 +44,9 @@ import mirrormonkey.framework.entity.SyncEntity;
  * <tt>SyncEntity</tt> will automatically be notified when the <tt>update</tt>
  * method of the local <tt>SyncAppState</tt> is called.
  * 
+ * Implementing classes may be annotated with <tt>UpdateSchedule</tt> to be
+ * updated less often or on worker threads.
+ * 
  * @author Philipp Christian Loewner
  * 
  */
@@ -51,7 +54,8 @@ public interface UpdateAwareEntity extends SyncEntity {
 
 	/**
 	 * Called on the current local instance whenever <tt>update</tt> is called
-	 * for the local <tt>SyncAppState</tt>.
+	 * for the local <tt>SyncAppState</tt>, or at the rate declared by its
+	 * <tt>UpdateSchedule</tt>.
 	 * 
 	 * @param tpf
 	 *            time that has passed since the last call, in seconds
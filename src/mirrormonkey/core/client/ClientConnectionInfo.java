@@ -39,6 +39,7 @@ package mirrormonkey.core.client;
 
 import mirrormonkey.framework.ClientSyncAppState;
 import mirrormonkey.framework.connection.ConnectionInfo;
+import mirrormonkey.framework.entity.StaticEntityData;
 
 import com.jme3.network.Client;
 import com.jme3.network.ClientStateListener;
@@ -57,6 +58,17 @@ import com.jme3.network.MessageConnection;
 public class ClientConnectionInfo extends ConnectionInfo<ClientSyncAppState>
 		implements ClientStateListener {
 
+	/**
+	 * Initial capacity of <tt>classes</tt>.
+	 */
+	private static final int INITIAL_CLASS_CAPACITY = 16;
+
+	/**
+	 * Client-side static entity data for every numeric class ID the server
+	 * announced, indexed by class ID.
+	 */
+	private StaticEntityData[] classes;
+
 	/**
 	 * Creates a new <tt>ClientConnectionInfo</tt> for a given
 	 * <tt>ClientSyncAppState</tt> and <tt>MessageConnection</tt>.
@@ -69,9 +81,49 @@ public class ClientConnectionInfo extends ConnectionInfo<ClientSyncAppState>
 	public ClientConnectionInfo(ClientSyncAppState appState,
 			MessageConnection connection) {
 		super(appState, connection, true);
+		classes = new StaticEntityData[INITIAL_CLASS_CAPACITY];
 		appState.getEventManager().addClientStateListener(this);
 	}
 
+	/**
+	 * Stores the static entity data that the server refers to by a numeric
+	 * class ID. Replaces any previous definition for the same ID.
+	 * 
+	 * Internal use only.
+	 * 
+	 * @param classId
+	 *            the ID assigned by the server
+	 * @param staticData
+	 *            the client-side static data for <tt>classId</tt>
+	 */
+	public void defineClass(int classId, StaticEntityData staticData) {
+		if (classId >= classes.length) {
+			StaticEntityData[] grown = new StaticEntityData[Math.max(
+					classId + 1, classes.length * 2)];
+			System.arraycopy(classes, 0, grown, 0, classes.length);
+			classes = grown;
+		}
+		classes[classId] = staticData;
+	}
+
+	/**
+	 * Internal use only.
+	 * 
+	 * @param classId
+	 *            an ID assigned by the server
+	 * @return the client-side static data for <tt>classId</tt>
+	 * @throws IllegalStateException
+	 *             if the server has not announced <tt>classId</tt>
+	 */
+	public StaticEntityData getClassData(int classId) {
+		StaticEntityData data = classId < classes.length ? classes[classId]
+				: null;
+		if (data == null) {
+			throw new IllegalStateException("Unknown class ID: " + classId);
+		}
+		return data;
+	}
+
 	public void clientConnected(Client c) {
 		// setRunning(true);
 	}
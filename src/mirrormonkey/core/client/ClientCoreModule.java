@@ -39,15 +39,24 @@ package mirrormonkey.core.client;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.PriorityQueue;
 
+import mirrormonkey.core.InitPriorityProvider;
+import mirrormonkey.core.member.ConstructorData;
 import mirrormonkey.core.messages.EntityChangeMessage;
 import mirrormonkey.core.messages.EntityEndMessage;
+import mirrormonkey.core.messages.EntityInitBatchMessage;
 import mirrormonkey.core.messages.EntityInitMessage;
+import mirrormonkey.core.messages.EntityReviveMessage;
 import mirrormonkey.core.module.CoreModule;
 import mirrormonkey.framework.ClientSyncAppState;
 import mirrormonkey.framework.connection.ConnectionInfo;
+import mirrormonkey.framework.entity.StaticEntityData;
+import mirrormonkey.util.IntMap;
 
+import com.jme3.network.Message;
 import com.jme3.network.MessageConnection;
+import com.jme3.network.MessageListener;
 
 /**
  * Client-Side implementation of <tt>CoreModule</tt>. In contrast to
@@ -78,6 +87,12 @@ public class ClientCoreModule extends
 	 */
 	private final EntityChangeListener changeListener;
 
+	/**
+	 * Responsible for listening to <tt>EntityReviveMessages</tt> and
+	 * reattaching dormant local instances.
+	 */
+	private final EntityReviveListener reviveListener;
+
 	/**
 	 * Containing data about the underlying client, which is connected to a
 	 * server using MirrorMonkey.
@@ -93,6 +108,56 @@ public class ClientCoreModule extends
 	 */
 	private final Collection<ConnectionInfo<?>> connectionInfoAsCollection;
 
+	/**
+	 * Keeps released local instances of <tt>PooledEntities</tt> for reuse.
+	 */
+	private final EntityPool entityPool;
+
+	/**
+	 * Maximum number of entities instantiated per frame, <tt>0</tt> if
+	 * unlimited.
+	 */
+	private int maxInitsPerFrame;
+
+	/**
+	 * Maximum time in nanoseconds spent instantiating entities per frame,
+	 * <tt>0</tt> if unlimited.
+	 */
+	private long maxInitNanosPerFrame;
+
+	/**
+	 * Decides which deferred entities are instantiated first, <tt>null</tt>
+	 * if they are instantiated in the order in which they arrived.
+	 */
+	private InitPriorityProvider initPriorityProvider;
+
+	/**
+	 * Entities waiting to be instantiated, by priority.
+	 */
+	private final PriorityQueue<PendingInit> pendingQueue;
+
+	/**
+	 * Entities waiting to be instantiated, by ID.
+	 */
+	private final IntMap<PendingInit> pendingInits;
+
+	/**
+	 * Number of entities instantiated during the current frame.
+	 */
+	private int frameInits;
+
+	/**
+	 * Time in nanoseconds spent instantiating entities during the current
+	 * frame.
+	 */
+	private long frameInitNanos;
+
+	/**
+	 * Incremented for every deferred entity to keep arrival order between
+	 * entities of equal priority.
+	 */
+	private long initSequence;
+
 	/**
 	 * Creates a new <tt>ClientCoreModule</tt> for a given <tt>SyncAppState</tt>
 	 * . This constructor is called by <tt>SyncAppState.getModule</tt> and
@@ -108,6 +173,8 @@ public class ClientCoreModule extends
 		initListener = new EntityInitListener(this);
 		appState.getEventManager().addMessageListener(initListener,
 				EntityInitMessage.class);
+		appState.getEventManager().addMessageListener(initListener,
+				EntityInitBatchMessage.class);
 
 		endListener = new EntityEndListener(this);
 		appState.getEventManager().addMessageListener(endListener,
@@ -117,19 +184,217 @@ public class ClientCoreModule extends
 		appState.getEventManager().addMessageListener(changeListener,
 				EntityChangeMessage.class);
 
+		reviveListener = new EntityReviveListener(this);
+		appState.getEventManager().addMessageListener(reviveListener,
+				EntityReviveMessage.class);
+
 		connectionInfo = new ClientConnectionInfo(appState,
 				appState.getClient());
 
 		connectionInfoAsCollection = new ArrayList<ConnectionInfo<?>>(1);
 		connectionInfoAsCollection.add(connectionInfo);
+
+		entityPool = new EntityPool();
+
+		pendingQueue = new PriorityQueue<PendingInit>();
+		pendingInits = new IntMap<PendingInit>();
 	}
 
 	@Override
 	public void update(float tpf) {
 		connectionInfo.update();
+		if (!pendingQueue.isEmpty()) {
+			beginBatch();
+			try {
+				while (!pendingQueue.isEmpty() && isInitBudgetLeft()) {
+					PendingInit p = pendingQueue.poll();
+					pendingInits.remove(p.message.entityId);
+					runInit(p);
+				}
+			} finally {
+				endBatch();
+			}
+		}
+		frameInits = 0;
+		frameInitNanos = 0;
 		super.update(tpf);
 	}
 
+	/**
+	 * Sets how much work may be spent per frame on instantiating entities
+	 * that became visible. Entities exceeding the budget are instantiated in
+	 * later frames, in the order given by the <tt>InitPriorityProvider</tt>.
+	 * 
+	 * @param maxInitsPerFrame
+	 *            maximum number of entities instantiated per frame,
+	 *            <tt>0</tt> for no limit
+	 * @param maxInitNanosPerFrame
+	 *            maximum time in nanoseconds spent on instantiation per frame,
+	 *            <tt>0</tt> for no limit
+	 * @throws IllegalArgumentException
+	 *             if a limit is negative
+	 */
+	public void setInitBudget(int maxInitsPerFrame, long maxInitNanosPerFrame) {
+		if (maxInitsPerFrame < 0 || maxInitNanosPerFrame < 0) {
+			throw new IllegalArgumentException("Negative init budget: "
+					+ maxInitsPerFrame + ", " + maxInitNanosPerFrame);
+		}
+		this.maxInitsPerFrame = maxInitsPerFrame;
+		this.maxInitNanosPerFrame = maxInitNanosPerFrame;
+	}
+
+	/**
+	 * @return maximum number of entities instantiated per frame, <tt>0</tt>
+	 *         if unlimited
+	 */
+	public int getMaxInitsPerFrame() {
+		return maxInitsPerFrame;
+	}
+
+	/**
+	 * @return maximum time in nanoseconds spent on instantiation per frame,
+	 *         <tt>0</tt> if unlimited
+	 */
+	public long getMaxInitNanosPerFrame() {
+		return maxInitNanosPerFrame;
+	}
+
+	/**
+	 * @return the <tt>InitPriorityProvider</tt> deciding which deferred
+	 *         entities are instantiated first, or <tt>null</tt> if they are
+	 *         instantiated in arrival order
+	 */
+	public InitPriorityProvider getInitPriorityProvider() {
+		return initPriorityProvider;
+	}
+
+	/**
+	 * Sets the <tt>InitPriorityProvider</tt> deciding which deferred entities
+	 * are instantiated first. Only affects entities deferred from now on.
+	 * 
+	 * @param initPriorityProvider
+	 *            new provider, or <tt>null</tt> to instantiate deferred
+	 *            entities in arrival order
+	 */
+	public void setInitPriorityProvider(
+			InitPriorityProvider initPriorityProvider) {
+		this.initPriorityProvider = initPriorityProvider;
+	}
+
+	/**
+	 * @return number of entities that have been announced by the server but
+	 *         are still waiting to be instantiated
+	 */
+	public int getPendingInitCount() {
+		return pendingQueue.size();
+	}
+
+	/**
+	 * @return <tt>true</tt> if more entities may be instantiated during the
+	 *         current frame, <tt>false</tt> otherwise
+	 */
+	private boolean isInitBudgetLeft() {
+		return (maxInitsPerFrame == 0 || frameInits < maxInitsPerFrame)
+				&& (maxInitNanosPerFrame == 0 || frameInitNanos < maxInitNanosPerFrame);
+	}
+
+	/**
+	 * Instantiates an entity that was announced by the server right away if
+	 * the budget of the current frame allows it and no other entities are
+	 * waiting, otherwise defers it to a later frame.
+	 * 
+	 * Internal use only.
+	 * 
+	 * @param source
+	 *            the connection to the server that announced the entity
+	 * @param message
+	 *            the message announcing the entity
+	 * @param staticData
+	 *            static context in which the entity becomes visible
+	 * @param constr
+	 *            the client-side constructor chosen by the server
+	 */
+	void scheduleInit(MessageConnection source, EntityInitMessage message,
+			StaticEntityData staticData, ConstructorData constr) {
+		int priority = 0;
+		if (pendingQueue.isEmpty() && isInitBudgetLeft()) {
+			runInit(new PendingInit(source, message, staticData, constr,
+					priority, 0));
+			return;
+		}
+		if (initPriorityProvider != null) {
+			priority = initPriorityProvider.getInitPriority(message.entityId,
+					staticData);
+		}
+		PendingInit p = new PendingInit(source, message, staticData, constr,
+				priority, initSequence++);
+		pendingQueue.add(p);
+		pendingInits.put(message.entityId, p);
+	}
+
+	/**
+	 * Instantiates an entity, charges the time spent to the budget of the
+	 * current frame and replays messages that were held back for it.
+	 * 
+	 * @param p
+	 *            the entity to instantiate
+	 */
+	private void runInit(PendingInit p) {
+		long start = System.nanoTime();
+		initListener.instantiate(p.source, p.message, p.staticData, p.constr);
+		frameInitNanos += System.nanoTime() - start;
+		frameInits++;
+		p.replay();
+	}
+
+	/**
+	 * Drops a deferred entity that became invisible again before it was
+	 * instantiated, along with every message held back for it.
+	 * 
+	 * Internal use only.
+	 * 
+	 * @param entityId
+	 *            ID of the entity
+	 * @return <tt>true</tt> if the entity was waiting to be instantiated,
+	 *         <tt>false</tt> otherwise
+	 */
+	boolean cancelPendingInit(int entityId) {
+		PendingInit p = pendingInits.remove(entityId);
+		if (p == null) {
+			return false;
+		}
+		pendingQueue.remove(p);
+		return true;
+	}
+
+	/**
+	 * Instantiates a deferred entity right away, regardless of the budget.
+	 * Does nothing if the entity is not waiting to be instantiated.
+	 * 
+	 * Internal use only.
+	 * 
+	 * @param entityId
+	 *            ID of the entity
+	 */
+	void completePendingInit(int entityId) {
+		PendingInit p = pendingInits.remove(entityId);
+		if (p != null) {
+			pendingQueue.remove(p);
+			runInit(p);
+		}
+	}
+
+	@Override
+	public boolean deferIfPending(int entityId,
+			MessageListener<MessageConnection> listener, Message message) {
+		PendingInit p = pendingInits.get(entityId);
+		if (p == null) {
+			return false;
+		}
+		p.defer(listener, message);
+		return true;
+	}
+
 	@Override
 	public ClientConnectionInfo getData(MessageConnection forConnection) {
 		return connectionInfo.getConnection().equals(forConnection) ? connectionInfo
@@ -144,6 +409,14 @@ public class ClientCoreModule extends
 		return connectionInfoAsCollection;
 	}
 
+	/**
+	 * @return the <tt>EntityPool</tt> keeping released local instances of
+	 *         <tt>PooledEntities</tt> for reuse
+	 */
+	public EntityPool getEntityPool() {
+		return entityPool;
+	}
+
 	/**
 	 * Returns an instance of <tt>ClientEntityData</tt> that contains mutable
 	 * data about an entity with a given ID.
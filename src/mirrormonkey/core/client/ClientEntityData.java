@@ -41,6 +41,7 @@ import java.util.Collection;
 
 import mirrormonkey.core.InstanceLifecycleListener;
 import mirrormonkey.core.InstanceRemovedEvent;
+import mirrormonkey.core.member.ConstructorData;
 import mirrormonkey.framework.connection.ConnectionInfo;
 import mirrormonkey.framework.entity.DynamicEntityData;
 import mirrormonkey.framework.entity.StaticEntityData;
@@ -79,6 +80,20 @@ public class ClientEntityData extends DynamicEntityData {
 	 */
 	private DynamicMemberData[] dynamicMembers;
 
+	/**
+	 * The constructor that created the current local instance, so that it can
+	 * be pooled when it is no longer used.
+	 * 
+	 * This will be <tt>null</tt> if the entity is not visible to this client.
+	 */
+	private ConstructorData constr;
+
+	/**
+	 * <tt>true</tt> while the local instance is kept detached because the
+	 * server made the entity dormant.
+	 */
+	private boolean dormant;
+
 	/**
 	 * Contains information about entities and connections. We keep track of it
 	 * because we may want to register / unregister this
@@ -191,9 +206,12 @@ public class ClientEntityData extends DynamicEntityData {
 	 *            the client-local instance
 	 * @param staticData
 	 *            static context in which the entity becomes visible
+	 * @param constr
+	 *            the constructor that created <tt>reference</tt>
 	 */
 	protected void referenceArrived(SyncEntity reference,
-			StaticEntityData staticData) {
+			StaticEntityData staticData, ConstructorData constr) {
+		this.constr = constr;
 		setLocalInstance(reference);
 		reference.setData(this);
 		setStaticData(staticData);
@@ -210,27 +228,84 @@ public class ClientEntityData extends DynamicEntityData {
 	 * 
 	 * Unregisters this <tt>ClientEntityData</tt> from the core module if there
 	 * are no <tt>InstanceLifecycleListeners</tt> registered and notifies
-	 * <tt>InstanceLifecycleListeners</tt>.
+	 * <tt>InstanceLifecycleListeners</tt>. Afterwards, the local instance is
+	 * handed to the <tt>EntityPool</tt> of the core module.
 	 * 
 	 */
 	public void referenceDeparted() {
-		module.notifyEndListeners(new InstanceRemovedEvent(getLocalInstance(),
-				this, staticData, module.getData(module.getAppState()
-						.getClient())));
-		module.notifyEntityRemoval(this);
+		if (dormant) {
+			dormant = false;
+		} else {
+			notifyDeparture();
+		}
 		// this if should never be necessary for normal programs, but is needed
 		// by the test applications to clear after each test case
-		if (getLocalInstance() != null) {
-			getLocalInstance().setData(null);
+		SyncEntity reference = getLocalInstance();
+		if (reference != null) {
+			reference.setData(null);
 		}
 		setLocalInstance(null);
 		setStaticData(null);
+		module.getEntityPool().release(constr, reference);
+		constr = null;
 		if (isNotDummy() && !hasInstanceLifecycleListeners()) {
 			destroy();
 			setNotDummy(false);
 		}
 	}
 
+	/**
+	 * Called whenever the entity represented by this <tt>ClientEntityData</tt>
+	 * becomes dormant.
+	 * 
+	 * Notifies <tt>InstanceLifecycleListeners</tt> as if the entity became
+	 * invisible, but keeps the local instance, the static context and the
+	 * registration so that the entity can be revived.
+	 */
+	protected void referenceSuspended() {
+		if (dormant) {
+			return;
+		}
+		notifyDeparture();
+		dormant = true;
+	}
+
+	/**
+	 * Called whenever the entity represented by this <tt>ClientEntityData</tt>
+	 * becomes visible again after being dormant. The caller is responsible for
+	 * notifying <tt>InstanceLifecycleListeners</tt>.
+	 * 
+	 * @return <tt>true</tt> if the entity was dormant and has been revived,
+	 *         <tt>false</tt> otherwise
+	 */
+	protected boolean referenceRevived() {
+		if (!dormant) {
+			return false;
+		}
+		dormant = false;
+		module.notifyEntityRegistration(this);
+		return true;
+	}
+
+	/**
+	 * @return <tt>true</tt> if the local instance is kept detached because
+	 *         the entity is dormant, <tt>false</tt> otherwise
+	 */
+	public boolean isDormant() {
+		return dormant;
+	}
+
+	/**
+	 * Notifies <tt>InstanceLifecycleListeners</tt> and
+	 * <tt>EntityRegistrationListeners</tt> that the entity became invisible.
+	 */
+	private void notifyDeparture() {
+		module.notifyEndListeners(new InstanceRemovedEvent(getLocalInstance(),
+				this, staticData, module.getData(module.getAppState()
+						.getClient())));
+		module.notifyEntityRemoval(this);
+	}
+
 	/**
 	 * Called whenever the client-local instance of the entity represented by
 	 * this <tt>ClientEntityData</tt> changes.
@@ -241,10 +316,17 @@ public class ClientEntityData extends DynamicEntityData {
 	 * 
 	 * @param newReference
 	 *            the new local instance of the entity
+	 * @param constr
+	 *            the constructor that created <tt>newReference</tt>
+	 * @return the constructor that created the previous local instance
 	 */
-	protected void newReferenceArrived(SyncEntity newReference) {
+	protected ConstructorData newReferenceArrived(SyncEntity newReference,
+			ConstructorData constr) {
+		ConstructorData oldConstr = this.constr;
+		this.constr = constr;
 		setLocalInstance(newReference);
 		newReference.setData(this);
+		return oldConstr;
 	}
 
 }
@@ -85,23 +85,24 @@ public class EntityChangeListener implements MessageListener<MessageConnection>
 	public void messageReceived(MessageConnection source, Message message) {
 		try {
 			EntityChangeMessage castMessage = (EntityChangeMessage) message;
-			@SuppressWarnings("unchecked")
-			Class<? extends SyncEntity> entityClass = (Class<? extends SyncEntity>) Class
-					.forName(castMessage.className);
+			module.completePendingInit(castMessage.entityId);
+			StaticEntityData newStaticData = EntityInitListener.resolveClass(
+					entityProvider, module.getData(source),
+					castMessage.classId, castMessage.className,
+					castMessage.connectedClassName);
 
 			ClientEntityData data = entityProvider
 					.getData(castMessage.entityId);
 			StaticEntityData oldStaticData = data.getActiveStaticData(source);
 			SyncEntity oldReference = data.getLocalInstance();
 
-			StaticEntityData newStaticData = entityProvider.getStaticData(
-					entityClass, oldStaticData.getConnectedClass());
 			ConstructorData constr = newStaticData.getData(
 					castMessage.constrId, ConstructorData.class);
-			SyncEntity newReference = constr
-					.newEntity(castMessage.packedParams);
+			SyncEntity newReference = module.getEntityPool().obtain(constr,
+					castMessage.packedParams);
 
-			data.newReferenceArrived(newReference);
+			ConstructorData oldConstr = data.newReferenceArrived(newReference,
+					constr);
 			data.setStaticData(newStaticData);
 
 			InstanceReplacedEvent e = new InstanceReplacedEvent(oldReference,
@@ -109,6 +110,9 @@ public class EntityChangeListener implements MessageListener<MessageConnection>
 					newStaticData, module.getData(source));
 			module.notifyReplacedListeners(e);
 			module.notifyReplacingListeners(e);
+			if (e.isReferenceChanged()) {
+				module.getEntityPool().release(oldConstr, oldReference);
+			}
 		} catch (RuntimeException e) {
 			throw e;
 		} catch (Exception e) {
@@ -46,6 +46,8 @@ import com.jme3.network.MessageListener;
 /**
  * Listens to <tt>EntityEndMessages</tt> from the connected server, destroys
  * entities accordingly and notifies <tt>InstanceLifecycleListeners</tt>.
+ * Entities that are ended as dormant keep their local instance until they are
+ * revived or ended again.
  * 
  * @author Philipp Christian Loewner
  * 
@@ -71,7 +73,17 @@ public class EntityEndListener implements MessageListener<MessageConnection> {
 
 	public void messageReceived(MessageConnection source, Message message) {
 		EntityEndMessage castMessage = (EntityEndMessage) message;
+		if (castMessage.dormant) {
+			// the server may revive it, so it must exist
+			module.completePendingInit(castMessage.entityId);
+		} else if (module.cancelPendingInit(castMessage.entityId)) {
+			return;
+		}
 		ClientEntityData data = module.getData(castMessage.entityId);
+		if (castMessage.dormant) {
+			data.referenceSuspended();
+			return;
+		}
 		data.referenceDeparted();
 		if (module.getData(source).isRunning()
 				&& !module.getEntityProvider().hasEntities()) {
@@ -39,7 +39,9 @@ package mirrormonkey.core.client;
 
 import mirrormonkey.core.InstanceInitializedEvent;
 import mirrormonkey.core.member.ConstructorData;
+import mirrormonkey.core.messages.EntityInitBatchMessage;
 import mirrormonkey.core.messages.EntityInitMessage;
+import mirrormonkey.framework.EntityProvider;
 import mirrormonkey.framework.entity.StaticEntityData;
 import mirrormonkey.framework.entity.SyncEntity;
 
@@ -48,8 +50,9 @@ import com.jme3.network.MessageConnection;
 import com.jme3.network.MessageListener;
 
 /**
- * Listens to <tt>EntityInitMessages</tt> from the connected server, initializes
- * entities accordingly and notifies <tt>InstanceLifecycleListeners</tt>.
+ * Listens to <tt>EntityInitMessages</tt> and <tt>EntityInitBatchMessages</tt>
+ * from the connected server, initializes entities accordingly and notifies
+ * <tt>InstanceLifecycleListeners</tt>.
  * 
  * @author Philipp Christian Loewner
  * 
@@ -74,34 +77,111 @@ public class EntityInitListener implements MessageListener<MessageConnection> {
 	}
 
 	public void messageReceived(MessageConnection source, Message message) {
+		if (message instanceof EntityInitBatchMessage) {
+			module.beginBatch();
+			try {
+				for (EntityInitMessage i : ((EntityInitBatchMessage) message).messages) {
+					initEntity(source, i);
+				}
+			} finally {
+				module.endBatch();
+			}
+		} else {
+			initEntity(source, (EntityInitMessage) message);
+		}
+	}
+
+	/**
+	 * Resolves the class and constructor of a single
+	 * <tt>EntityInitMessage</tt> and lets the core module decide whether the
+	 * entity is instantiated now or in a later frame.
+	 * 
+	 * @param source
+	 *            the connection to the server that sent the message
+	 * @param castMessage
+	 *            describes the entity that became visible
+	 */
+	private void initEntity(MessageConnection source,
+			EntityInitMessage castMessage) {
 		try {
-			EntityInitMessage castMessage = (EntityInitMessage) message;
-			@SuppressWarnings("unchecked")
-			Class<? extends SyncEntity> entityClass = (Class<? extends SyncEntity>) Class
-					.forName(castMessage.className);
-			@SuppressWarnings("unchecked")
-			Class<? extends SyncEntity> connectedClass = (Class<? extends SyncEntity>) Class
-					.forName(castMessage.connectedClassName);
-			StaticEntityData staticData = module.getEntityProvider()
-					.getStaticData(entityClass, connectedClass);
+			StaticEntityData staticData = resolveClass(
+					module.getEntityProvider(), module.getData(source),
+					castMessage.classId, castMessage.className,
+					castMessage.connectedClassName);
 
 			ConstructorData constr = staticData.getData(castMessage.constrId,
 					ConstructorData.class);
-			SyncEntity reference = constr.newEntity(castMessage.packedParams);
-
-			ClientEntityData data = module.getData(castMessage.entityId);
-			data.referenceArrived(reference, staticData);
-			if (!module.getData(source).isRunning()) {
-				module.getData(source).setRunning(true);
-			}
-
-			module.notifyInitListeners(new InstanceInitializedEvent(data
-					.getLocalInstance(), data,
-					data.getActiveStaticData(source), module.getData(source)));
+			module.scheduleInit(source, castMessage, staticData, constr);
 		} catch (RuntimeException e) {
 			throw e;
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
 	}
+
+	/**
+	 * Creates the client-local instance for a single
+	 * <tt>EntityInitMessage</tt>, registers it and notifies
+	 * <tt>InstanceLifecycleListeners</tt>.
+	 * 
+	 * Internal use only.
+	 * 
+	 * @param source
+	 *            the connection to the server that sent the message
+	 * @param castMessage
+	 *            describes the entity that became visible
+	 * @param staticData
+	 *            static context in which the entity becomes visible
+	 * @param constr
+	 *            the client-side constructor chosen by the server
+	 */
+	void instantiate(MessageConnection source, EntityInitMessage castMessage,
+			StaticEntityData staticData, ConstructorData constr) {
+		SyncEntity reference = module.getEntityPool().obtain(constr,
+				castMessage.packedParams);
+
+		ClientEntityData data = module.getData(castMessage.entityId);
+		data.referenceArrived(reference, staticData, constr);
+		if (!module.getData(source).isRunning()) {
+			module.getData(source).setRunning(true);
+		}
+
+		module.notifyInitListeners(new InstanceInitializedEvent(data
+				.getLocalInstance(), data, data.getActiveStaticData(source),
+				module.getData(source)));
+	}
+
+	/**
+	 * Resolves the numeric class ID of a lifecycle message. If the message
+	 * carries class names, then the static data for these classes is fetched
+	 * and stored for the class ID first.
+	 * 
+	 * @param provider
+	 *            provides static entity data
+	 * @param info
+	 *            stores the class IDs announced by the server
+	 * @param classId
+	 *            the class ID carried by the message
+	 * @param className
+	 *            name of the client-local class, or <tt>null</tt> if
+	 *            <tt>classId</tt> is already known
+	 * @param connectedClassName
+	 *            name of the server-local class, or <tt>null</tt> if
+	 *            <tt>classId</tt> is already known
+	 * @return the client-side static data for <tt>classId</tt>
+	 * @throws ClassNotFoundException
+	 *             if one of the announced classes does not exist locally
+	 */
+	@SuppressWarnings("unchecked")
+	static StaticEntityData resolveClass(EntityProvider<?> provider,
+			ClientConnectionInfo info, int classId, String className,
+			String connectedClassName) throws ClassNotFoundException {
+		if (className != null) {
+			info.defineClass(classId, provider.getStaticData(
+					(Class<? extends SyncEntity>) Class.forName(className),
+					(Class<? extends SyncEntity>) Class
+							.forName(connectedClassName)));
+		}
+		return info.getClassData(classId);
+	}
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2011, 2012, Philipp Christian Loewner
+ * All rights reserved.
+ * 
+ * Disclaimer:
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * This software uses parts of:
+ * jMonkeyEngine
+ * Copyright (c) 2009-2010 jMonkeyEngine
+ * All rights reserved.
+ * 
+ * For jMonkeyEngine, the same disclaimer as printed above applies.
+ */
+
+package mirrormonkey.core.client;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import mirrormonkey.core.PooledEntity;
+import mirrormonkey.core.member.ConstructorData;
+import mirrormonkey.framework.entity.SyncEntity;
+
+/**
+ * Keeps released <tt>PooledEntity</tt> instances per client-side constructor,
+ * so that they can be reused instead of constructing new instances when
+ * entities become visible.
+ * 
+ * Only instances of classes implementing <tt>PooledEntity</tt> are pooled. All
+ * other entities are constructed and dropped as usual.
+ * 
+ * @author Philipp Christian Loewner
+ * 
+ */
+public class EntityPool {
+
+	/**
+	 * Default maximum number of released instances kept per constructor.
+	 */
+	public static final int DEFAULT_CAPACITY = 32;
+
+	/**
+	 * Released instances by the constructor that created them.
+	 */
+	private final Map<ConstructorData, List<PooledEntity>> pooled;
+
+	/**
+	 * Maximum number of released instances kept per constructor.
+	 */
+	private int capacity;
+
+	/**
+	 * Creates a new, empty <tt>EntityPool</tt> with the default capacity.
+	 */
+	public EntityPool() {
+		pooled = new IdentityHashMap<ConstructorData, List<PooledEntity>>();
+		capacity = DEFAULT_CAPACITY;
+	}
+
+	/**
+	 * Fetches a local instance for an entity that just became visible. Reuses
+	 * a released instance created by <tt>constr</tt> if there is one,
+	 * otherwise a new instance is constructed.
+	 * 
+	 * @param constr
+	 *            the client-side constructor chosen by the server
+	 * @param packedParams
+	 *            packed constructor parameters as sent by the server
+	 * @return a local instance initialized with <tt>packedParams</tt>
+	 */
+	public SyncEntity obtain(ConstructorData constr, Object[] packedParams) {
+		List<PooledEntity> l = pooled.get(constr);
+		if (l == null || l.isEmpty()) {
+			return constr.newEntity(packedParams);
+		}
+		PooledEntity e = l.remove(l.size() - 1);
+		constr.reinitialize(e, packedParams);
+		return e;
+	}
+
+	/**
+	 * Keeps a local instance for later reuse if it is a
+	 * <tt>PooledEntity</tt> and there is room left for its constructor.
+	 * 
+	 * @param constr
+	 *            the constructor that created <tt>entity</tt>, may be
+	 *            <tt>null</tt> if unknown
+	 * @param entity
+	 *            the instance that is no longer used, may be <tt>null</tt>
+	 */
+	public void release(ConstructorData constr, SyncEntity entity) {
+		if (constr == null || !(entity instanceof PooledEntity)) {
+			return;
+		}
+		List<PooledEntity> l = pooled.get(constr);
+		if (l == null) {
+			l = new ArrayList<PooledEntity>();
+			pooled.put(constr, l);
+		}
+		if (l.size() >= capacity) {
+			return;
+		}
+		PooledEntity e = (PooledEntity) entity;
+		e.setData(null);
+		e.released();
+		l.add(e);
+	}
+
+	/**
+	 * @return maximum number of released instances kept per constructor
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Sets the maximum number of released instances kept per constructor.
+	 * Instances exceeding the new capacity are dropped.
+	 * 
+	 * @param capacity
+	 *            new capacity, <tt>0</tt> disables pooling
+	 * @throws IllegalArgumentException
+	 *             if <tt>capacity</tt> is negative
+	 */
+	public void setCapacity(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Negative capacity: "
+					+ capacity);
+		}
+		this.capacity = capacity;
+		for (List<PooledEntity> l : pooled.values()) {
+			while (l.size() > capacity) {
+				l.remove(l.size() - 1);
+			}
+		}
+	}
+
+	/**
+	 * @param constr
+	 *            a client-side constructor
+	 * @return number of released instances created by <tt>constr</tt> that
+	 *         are currently kept
+	 */
+	public int getPooledCount(ConstructorData constr) {
+		List<PooledEntity> l = pooled.get(constr);
+		return l == null ? 0 : l.size();
+	}
+
+	/**
+	 * Drops every released instance.
+	 */
+	public void clear() {
+		pooled.clear();
+	}
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2011, 2012, Philipp Christian Loewner
+ * All rights reserved.
+ * 
+ * Disclaimer:
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * This software uses parts of:
+ * jMonkeyEngine
+ * Copyright (c) 2009-2010 jMonkeyEngine
+ * All rights reserved.
+ * 
+ * For jMonkeyEngine, the same disclaimer as printed above applies.
+ */
+
+package mirrormonkey.core.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import mirrormonkey.core.member.ConstructorData;
+import mirrormonkey.core.messages.EntityInitMessage;
+import mirrormonkey.framework.entity.StaticEntityData;
+
+import com.jme3.network.Message;
+import com.jme3.network.MessageConnection;
+import com.jme3.network.MessageListener;
+
+/**
+ * An entity that became visible to the client but whose instantiation was
+ * deferred because the instantiation budget of the current frame was used
+ * up.
+ * 
+ * Messages concerning the entity that arrive in the meantime are kept and
+ * replayed once the entity has been instantiated.
+ * 
+ * @author Philipp Christian Loewner
+ * 
+ */
+final class PendingInit implements Comparable<PendingInit> {
+
+	/**
+	 * The connection to the server that announced the entity.
+	 */
+	final MessageConnection source;
+
+	/**
+	 * The message announcing the entity.
+	 */
+	final EntityInitMessage message;
+
+	/**
+	 * Static context in which the entity will become visible.
+	 */
+	final StaticEntityData staticData;
+
+	/**
+	 * The client-side constructor chosen by the server.
+	 */
+	final ConstructorData constr;
+
+	/**
+	 * Entities with higher priority are instantiated first.
+	 */
+	final int priority;
+
+	/**
+	 * Order in which entities were deferred, breaks ties between equal
+	 * priorities.
+	 */
+	final long sequence;
+
+	/**
+	 * Listeners of the messages to replay after instantiation, or
+	 * <tt>null</tt> if no message has been deferred.
+	 */
+	private List<MessageListener<MessageConnection>> deferredListeners;
+
+	/**
+	 * Messages to replay after instantiation, in arrival order, or
+	 * <tt>null</tt> if no message has been deferred.
+	 */
+	private List<Message> deferredMessages;
+
+	/**
+	 * Creates a new <tt>PendingInit</tt>.
+	 * 
+	 * @param source
+	 *            the connection to the server that announced the entity
+	 * @param message
+	 *            the message announcing the entity
+	 * @param staticData
+	 *            static context in which the entity will become visible
+	 * @param constr
+	 *            the client-side constructor chosen by the server
+	 * @param priority
+	 *            priority of the entity
+	 * @param sequence
+	 *            order in which the entity was deferred
+	 */
+	PendingInit(MessageConnection source, EntityInitMessage message,
+			StaticEntityData staticData, ConstructorData constr, int priority,
+			long sequence) {
+		this.source = source;
+		this.message = message;
+		this.staticData = staticData;
+		this.constr = constr;
+		this.priority = priority;
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Keeps a message so that it can be passed to its listener after the
+	 * entity has been instantiated.
+	 * 
+	 * @param listener
+	 *            the listener that the message was meant for
+	 * @param m
+	 *            the message to keep
+	 */
+	void defer(MessageListener<MessageConnection> listener, Message m) {
+		if (deferredMessages == null) {
+			deferredListeners = new ArrayList<MessageListener<MessageConnection>>();
+			deferredMessages = new ArrayList<Message>();
+		}
+		deferredListeners.add(listener);
+		deferredMessages.add(m);
+	}
+
+	/**
+	 * Passes every kept message to its listener, in arrival order.
+	 */
+	void replay() {
+		if (deferredMessages == null) {
+			return;
+		}
+		for (int i = 0; i < deferredMessages.size(); i++) {
+			deferredListeners.get(i).messageReceived(source,
+					deferredMessages.get(i));
+		}
+		deferredListeners = null;
+		deferredMessages = null;
+	}
+
+	public int compareTo(PendingInit o) {
+		if (priority != o.priority) {
+			return priority > o.priority ? -1 : 1;
+		}
+		return sequence < o.sequence ? -1 : (sequence == o.sequence ? 0 : 1);
+	}
+
+}
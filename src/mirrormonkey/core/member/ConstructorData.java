@@ -39,13 +39,15 @@ package mirrormonkey.core.member;
 
 import java.lang.reflect.Constructor;
 
+import mirrormonkey.core.PooledEntity;
 import mirrormonkey.core.annotations.NamedClientSideConstructor;
 import mirrormonkey.framework.entity.DynamicEntityData;
 import mirrormonkey.framework.entity.StaticEntityData;
 import mirrormonkey.framework.entity.SyncEntity;
 import mirrormonkey.framework.member.DynamicMemberData;
 import mirrormonkey.framework.member.MemberDataKey;
-import mirrormonkey.framework.member.StaticMemberData;
+import mirrormonkey.framework.member.StatelessMemberData;
+import mirrormonkey.framework.parameter.NullInterpreter;
 import mirrormonkey.framework.parameter.ValueInterpreter;
 import mirrormonkey.framework.parameter.ValueUtil;
 
@@ -56,7 +58,12 @@ import mirrormonkey.framework.parameter.ValueUtil;
  * @author Philipp Christian Loewner
  * 
  */
-public class ConstructorData implements StaticMemberData {
+public class ConstructorData implements StatelessMemberData {
+
+	/**
+	 * Packed parameters of constructors without parameters.
+	 */
+	private static final Object[] NO_PARAMS = new Object[0];
 
 	/**
 	 * The <tt>PresentKey</tt> used to match searches against the represented
@@ -81,6 +88,13 @@ public class ConstructorData implements StaticMemberData {
 	 */
 	private final Constructor<?> constr;
 
+	/**
+	 * <tt>true</tt> if every parameter is transmitted as it is, so that packed
+	 * and unpacked parameters are the same and no interpreter has to be
+	 * called.
+	 */
+	private final boolean passThrough;
+
 	/**
 	 * The static context for which this <tt>ConstructorData</tt> represents a
 	 * valid constructor.
@@ -110,6 +124,47 @@ public class ConstructorData implements StaticMemberData {
 		this.id = id;
 		this.interpreters = interpreters;
 		this.constr = constr;
+		boolean passThrough = true;
+		for (ValueInterpreter i : interpreters) {
+			passThrough &= i.getClass() == NullInterpreter.class;
+		}
+		this.passThrough = passThrough;
+		try {
+			constr.setAccessible(true);
+		} catch (SecurityException e) {
+			// access checks will be performed on every invocation instead
+		}
+	}
+
+	/**
+	 * Packs constructor parameters for network transfer.
+	 * 
+	 * @param constrParams
+	 *            parameters for the represented constructor
+	 * @return packed parameters, always a new array
+	 */
+	public Object[] packParams(Object[] constrParams) {
+		if (constrParams.length == 0) {
+			return NO_PARAMS;
+		}
+		if (passThrough) {
+			return constrParams.clone();
+		}
+		return ValueUtil.packData(interpreters, constrParams);
+	}
+
+	/**
+	 * Unpacks constructor parameters that were received over the network.
+	 * 
+	 * @param packedParams
+	 *            packed parameters, which may be returned as they are
+	 * @return parameters for the represented constructor
+	 */
+	public Object[] unpackParams(Object[] packedParams) {
+		if (passThrough) {
+			return packedParams;
+		}
+		return ValueUtil.extractData(interpreters, packedParams);
 	}
 
 	/**
@@ -117,13 +172,13 @@ public class ConstructorData implements StaticMemberData {
 	 * represented constructor for a given array of parameters.
 	 * 
 	 * @param constrParams
-	 *            parameters that should be passed to the constructor invocation
+	 *            packed parameters that should be passed to the constructor
+	 *            invocation
 	 * @return the newly created local entity instance
 	 */
 	public SyncEntity newEntity(Object[] constrParams) {
 		try {
-			return (SyncEntity) getConstr().newInstance(
-					ValueUtil.extractData(getInterpreters(), constrParams));
+			return (SyncEntity) constr.newInstance(unpackParams(constrParams));
 		} catch (RuntimeException e) {
 			throw e;
 		} catch (Exception e) {
@@ -131,6 +186,19 @@ public class ConstructorData implements StaticMemberData {
 		}
 	}
 
+	/**
+	 * Reuses a released instance as if it had been created by calling
+	 * <tt>newEntity</tt> with the same parameters.
+	 * 
+	 * @param entity
+	 *            released instance that was created by this constructor
+	 * @param constrParams
+	 *            packed constructor parameters
+	 */
+	public void reinitialize(PooledEntity entity, Object[] constrParams) {
+		entity.reinitialize(unpackParams(constrParams));
+	}
+
 	@Override
 	public int hashCode() {
 		return ConstructorData.class.hashCode()
@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2011, 2012, Philipp Christian Loewner
+ * All rights reserved.
+ * 
+ * Disclaimer:
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * This software uses parts of:
+ * jMonkeyEngine
+ * Copyright (c) 2009-2010 jMonkeyEngine
+ * All rights reserved.
+ * 
+ * For jMonkeyEngine, the same disclaimer as printed above applies.
+ */
+
+package mirrormonkey.core.member;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import mirrormonkey.framework.entity.DynamicEntityData;
+import mirrormonkey.framework.entity.StaticEntityData;
+import mirrormonkey.framework.entity.SyncEntity;
+import mirrormonkey.framework.member.StaticMemberData;
+
+import com.jme3.asset.AssetKey;
+
+/**
+ * Resolves <tt>SearchKeys</tt> to the <tt>ConstructorData</tt> of a single
+ * <tt>StaticEntityData</tt> without probing every constructor of the same
+ * arity.
+ * 
+ * Constructors are grouped by the name they are bound to (if any) and by their
+ * number of parameters, keeping the order in which they appear in the member
+ * array of the <tt>StaticEntityData</tt>. If more than one constructor is a
+ * candidate for a <tt>SearchKey</tt>, then the result is memoized by the shape
+ * of the call, that is the class of the <tt>SearchKey</tt>, the name it
+ * searches for and the runtime classes of the parameters (including the
+ * connected class of entity parameters on the connection that the call is
+ * issued for). Calls with the same shape are always resolved to the same
+ * constructor, so repeated calls are answered with a single hash lookup.
+ * 
+ * Calls that contain <tt>AssetKeys</tt> are not memoized, as the asset classes
+ * that they map to can change at runtime.
+ * 
+ * @author Philipp Christian Loewner
+ * 
+ */
+public final class ConstructorIndex {
+
+	/**
+	 * Maximum number of memoized call shapes. If more shapes are used, the
+	 * least recently used one is discarded.
+	 */
+	public static final int MAX_CACHED_SHAPES = 64;
+
+	/**
+	 * Returned for arities or names without any constructors.
+	 */
+	private static final ConstructorData[] NO_CANDIDATES = new ConstructorData[0];
+
+	/**
+	 * Every constructor, by number of parameters.
+	 */
+	private final ConstructorData[][] byArity;
+
+	/**
+	 * Constructors that are bound to a name, by name and number of parameters.
+	 */
+	private final Map<String, ConstructorData[][]> byName;
+
+	/**
+	 * Memoized results for call shapes with more than one candidate.
+	 */
+	private final Map<ShapeKey, ConstructorData> cache;
+
+	/**
+	 * Creates a new <tt>ConstructorIndex</tt> containing every
+	 * <tt>ConstructorData</tt> among the members of a <tt>StaticEntityData</tt>.
+	 * 
+	 * @param staticData
+	 *            the <tt>StaticEntityData</tt> to index
+	 */
+	public ConstructorIndex(StaticEntityData staticData) {
+		List<List<ConstructorData>> arities = new ArrayList<List<ConstructorData>>();
+		Map<String, List<List<ConstructorData>>> names = new HashMap<String, List<List<ConstructorData>>>();
+		for (StaticMemberData smd : staticData.getMembersById()) {
+			if (!ConstructorData.class.isInstance(smd)) {
+				continue;
+			}
+			ConstructorData cd = (ConstructorData) smd;
+			int arity = cd.getInterpreters().length;
+			add(arities, arity, cd);
+			if (PresentNamedKey.class.equals(cd.getMemberKey().getClass())) {
+				String name = ((PresentNamedKey) cd.getMemberKey()).name;
+				List<List<ConstructorData>> l = names.get(name);
+				if (l == null) {
+					l = new ArrayList<List<ConstructorData>>();
+					names.put(name, l);
+				}
+				add(l, arity, cd);
+			}
+		}
+		byArity = toArray(arities);
+		byName = new HashMap<String, ConstructorData[][]>();
+		for (Map.Entry<String, List<List<ConstructorData>>> e : names
+				.entrySet()) {
+			byName.put(e.getKey(), toArray(e.getValue()));
+		}
+		cache = new LinkedHashMap<ShapeKey, ConstructorData>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<ShapeKey, ConstructorData> eldest) {
+				return size() > MAX_CACHED_SHAPES;
+			}
+
+		};
+	}
+
+	/**
+	 * Finds the constructor that a <tt>SearchKey</tt> resolves to.
+	 * 
+	 * @param key
+	 *            the <tt>SearchKey</tt> describing the constructor call
+	 * @return the first constructor that <tt>key</tt> matches, or
+	 *         <tt>null</tt> if it does not match any constructor
+	 */
+	public ConstructorData find(SearchKey key) {
+		ConstructorData[] candidates = getCandidates(key.getName(),
+				key.getParameters().length);
+		if (candidates.length == 0) {
+			return null;
+		} else if (candidates.length == 1) {
+			return key.equals(candidates[0].getMemberKey()) ? candidates[0]
+					: null;
+		}
+
+		ShapeKey shape = ShapeKey.create(key);
+		if (shape != null) {
+			ConstructorData cd = cache.get(shape);
+			if (cd != null) {
+				return cd;
+			}
+		}
+		for (ConstructorData cd : candidates) {
+			if (key.equals(cd.getMemberKey())) {
+				if (shape != null) {
+					cache.put(shape, cd);
+				}
+				return cd;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns every constructor that may match a call with a given name and
+	 * number of parameters.
+	 * 
+	 * @param name
+	 *            name that the constructor must be bound to, or <tt>null</tt>
+	 *            if any constructor may match
+	 * @param arity
+	 *            number of parameters
+	 * @return candidate constructors, in member order
+	 */
+	private ConstructorData[] getCandidates(String name, int arity) {
+		ConstructorData[][] a = name == null ? byArity : byName.get(name);
+		if (a == null || arity >= a.length) {
+			return NO_CANDIDATES;
+		}
+		return a[arity];
+	}
+
+	/**
+	 * Adds a constructor to a list of lists indexed by arity, growing it as
+	 * needed.
+	 * 
+	 * @param l
+	 *            the list of lists
+	 * @param arity
+	 *            number of parameters of the constructor
+	 * @param cd
+	 *            the constructor
+	 */
+	private static void add(List<List<ConstructorData>> l, int arity,
+			ConstructorData cd) {
+		while (l.size() <= arity) {
+			l.add(new ArrayList<ConstructorData>(1));
+		}
+		l.get(arity).add(cd);
+	}
+
+	/**
+	 * Converts a list of lists indexed by arity to arrays.
+	 * 
+	 * @param l
+	 *            the list of lists
+	 * @return array containing an array of constructors for every arity
+	 */
+	private static ConstructorData[][] toArray(List<List<ConstructorData>> l) {
+		ConstructorData[][] a = new ConstructorData[l.size()][];
+		for (int i = 0; i < a.length; i++) {
+			List<ConstructorData> c = l.get(i);
+			a[i] = c.isEmpty() ? NO_CANDIDATES : c
+					.toArray(new ConstructorData[c.size()]);
+		}
+		return a;
+	}
+
+	/**
+	 * Describes everything that the result of matching a <tt>SearchKey</tt>
+	 * against the constructors of a single <tt>StaticEntityData</tt> depends
+	 * on.
+	 * 
+	 * @author Philipp Christian Loewner
+	 * 
+	 */
+	private static final class ShapeKey {
+
+		/**
+		 * Class of the <tt>SearchKey</tt>, determining the matching algorithm.
+		 */
+		private final Class<?> keyClass;
+
+		/**
+		 * Name searched for, may be <tt>null</tt>.
+		 */
+		private final String name;
+
+		/**
+		 * For every parameter, its runtime class and the connected class it
+		 * is visible as on the connection (if it is an entity).
+		 */
+		private final Class<?>[] types;
+
+		/**
+		 * Cached hash code.
+		 */
+		private final int hash;
+
+		/**
+		 * Creates a new <tt>ShapeKey</tt>.
+		 * 
+		 * @param keyClass
+		 *            class of the <tt>SearchKey</tt>
+		 * @param name
+		 *            name searched for
+		 * @param types
+		 *            runtime and connected classes of the parameters
+		 */
+		private ShapeKey(Class<?> keyClass, String name, Class<?>[] types) {
+			this.keyClass = keyClass;
+			this.name = name;
+			this.types = types;
+			hash = 31 * (31 * keyClass.hashCode() + (name == null ? 0 : name
+					.hashCode())) + Arrays.hashCode(types);
+		}
+
+		/**
+		 * Creates the <tt>ShapeKey</tt> describing a <tt>SearchKey</tt>.
+		 * 
+		 * @param key
+		 *            the <tt>SearchKey</tt>
+		 * @return <tt>ShapeKey</tt> for <tt>key</tt>, or <tt>null</tt> if the
+		 *         result for <tt>key</tt> must not be memoized
+		 */
+		public static ShapeKey create(SearchKey key) {
+			Object[] params = key.getParameters();
+			Class<?>[] types = new Class<?>[params.length * 2];
+			for (int i = 0; i < params.length; i++) {
+				Object p = params[i];
+				if (p == null) {
+					continue;
+				} else if (AssetKey.class.isInstance(p)) {
+					return null;
+				}
+				types[2 * i] = p.getClass();
+				if (SyncEntity.class.isInstance(p)) {
+					DynamicEntityData d = ((SyncEntity) p).getData();
+					StaticEntityData sd = d == null ? null : d
+							.getActiveStaticData(key.getConnection());
+					types[2 * i + 1] = sd == null ? null : sd
+							.getConnectedClass();
+				}
+			}
+			return new ShapeKey(key.getClass(), key.getName(), types);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!ShapeKey.class.isInstance(o)) {
+				return false;
+			}
+			ShapeKey k = (ShapeKey) o;
+			return keyClass == k.keyClass
+					&& (name == null ? k.name == null : name.equals(k.name))
+					&& Arrays.equals(types, k.types);
+		}
+
+	}
+
+}
@@ -66,6 +66,11 @@ public final class SearchCompatibleKey extends SearchKey {
 		super(connection, parameters);
 	}
 
+	@Override
+	public SearchKey withConnection(MessageConnection connection) {
+		return new SearchCompatibleKey(connection, getParameters());
+	}
+
 	@Override
 	public final boolean equals(Object o) {
 		if (!PresentKey.class.isInstance(o)) {
@@ -66,6 +66,11 @@ public class SearchExactKey extends SearchKey {
 		super(connection, parameters);
 	}
 
+	@Override
+	public SearchKey withConnection(MessageConnection connection) {
+		return new SearchExactKey(connection, getParameters());
+	}
+
 	@Override
 	public final boolean equals(Object o) {
 		if (!PresentKey.class.isInstance(o)) {
@@ -99,4 +99,27 @@ public abstract class SearchKey implements MemberDataKey {
 		return connection;
 	}
 
+	/**
+	 * @return the name that matching constructors must be bound to, or
+	 *         <tt>null</tt> if this <tt>SearchKey</tt> does not match by name
+	 */
+	public String getName() {
+		return null;
+	}
+
+	/**
+	 * Creates a copy of this <tt>SearchKey</tt> that uses the same search
+	 * algorithm, parameters and name, but searches a constructor for another
+	 * connection.
+	 * 
+	 * Used when the same constructor call is issued for many connections at
+	 * once.
+	 * 
+	 * @param connection
+	 *            the connection for which the copy should search a
+	 *            constructor
+	 * @return a new <tt>SearchKey</tt> for <tt>connection</tt>
+	 */
+	public abstract SearchKey withConnection(MessageConnection connection);
+
 }
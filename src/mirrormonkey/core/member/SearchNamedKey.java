@@ -74,6 +74,16 @@ public final class SearchNamedKey extends SearchKey {
 		this.name = name;
 	}
 
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public SearchKey withConnection(MessageConnection connection) {
+		return new SearchNamedKey(connection, getParameters(), name);
+	}
+
 	@Override
 	public final boolean equals(Object o) {
 		if (!o.getClass().equals(PresentNamedKey.class)) {
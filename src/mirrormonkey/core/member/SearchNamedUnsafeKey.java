@@ -73,6 +73,16 @@ public final class SearchNamedUnsafeKey extends SearchKey {
 		this.name = name;
 	}
 
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public SearchKey withConnection(MessageConnection connection) {
+		return new SearchNamedUnsafeKey(connection, getParameters(), name);
+	}
+
 	@Override
 	public final boolean equals(Object o) {
 		if (!o.getClass().equals(PresentNamedKey.class)) {
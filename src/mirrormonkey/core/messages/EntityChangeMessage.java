@@ -39,7 +39,6 @@ package mirrormonkey.core.messages;
 
 import mirrormonkey.core.member.ConstructorData;
 import mirrormonkey.framework.entity.DynamicEntityData;
-import mirrormonkey.framework.parameter.ValueUtil;
 
 import com.jme3.network.Message;
 import com.jme3.network.serializing.Serializable;
@@ -61,11 +60,23 @@ public class EntityChangeMessage implements Message {
 	public int entityId;
 
 	/**
-	 * The name of the new client-local class - the server-local class always
-	 * remains unchanged.
+	 * Numeric ID of the new pair of client-local and server-local class,
+	 * assigned by the server per connection.
+	 */
+	public int classId;
+
+	/**
+	 * The name of the new client-local class. Only transmitted the first time
+	 * <tt>classId</tt> is used for a connection, <tt>null</tt> otherwise.
 	 */
 	public String className;
 
+	/**
+	 * The name of the server-local class, which always remains unchanged. Only
+	 * transmitted together with <tt>className</tt>.
+	 */
+	public String connectedClassName;
+
 	/**
 	 * The ID of the constructor that should be called in the static context
 	 * data.
@@ -96,18 +107,28 @@ public class EntityChangeMessage implements Message {
 	 *            should be changed
 	 * @param constr
 	 *            data about the constructor to be called on the client side
+	 * @param classId
+	 *            ID of the static data of <tt>constr</tt> for the receiving
+	 *            connection
+	 * @param defineClass
+	 *            <tt>true</tt> if the class names should be transmitted because
+	 *            <tt>classId</tt> has not been used for the receiving
+	 *            connection before
 	 * @param constrParams
 	 *            Arguments passed to <tt>callConstr</tt>. They will be packed
 	 *            according to the <tt>ParameterInterpreters</tt> present in
 	 *            <tt>constr</tt> by this constructor.
 	 */
 	public EntityChangeMessage(DynamicEntityData data, ConstructorData constr,
-			Object... constrParams) {
+			int classId, boolean defineClass, Object... constrParams) {
 		entityId = data.getId();
-		className = constr.getConnectedClassName();
+		this.classId = classId;
+		if (defineClass) {
+			className = constr.getConnectedClassName();
+			connectedClassName = constr.getLocalClassName();
+		}
 		constrId = constr.getId();
-		packedParams = ValueUtil.packData(constr.getInterpreters(),
-				constrParams);
+		packedParams = constr.packParams(constrParams);
 	}
 
 	public boolean isReliable() {
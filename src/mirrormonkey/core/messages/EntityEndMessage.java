@@ -46,6 +46,11 @@ import com.jme3.network.serializing.Serializable;
  * This message is sent from server to client whenever an entity becomes
  * invisible to that client and the local instance should be destroyed.
  * 
+ * If <tt>dormant</tt> is set, then the entity may become visible again soon.
+ * The client keeps the local instance detached until it receives either an
+ * <tt>EntityReviveMessage</tt> or another <tt>EntityEndMessage</tt> for the
+ * entity.
+ * 
  * @author Philipp Christian Loewner
  * 
  */
@@ -57,6 +62,12 @@ public class EntityEndMessage implements Message {
 	 */
 	public int entityId;
 
+	/**
+	 * <tt>true</tt> if the local instance should be kept for a possible
+	 * revival, <tt>false</tt> if it should be destroyed.
+	 */
+	public boolean dormant;
+
 	/**
 	 * Empty constructor for serializing.
 	 * 
@@ -74,7 +85,21 @@ public class EntityEndMessage implements Message {
 	 *            contains data about the entity that became invisible
 	 */
 	public EntityEndMessage(DynamicEntityData data) {
+		this(data, false);
+	}
+
+	/**
+	 * Creates a new <tt>EntityEndMessage</tt> for the entity provided.
+	 * 
+	 * @param data
+	 *            contains data about the entity that became invisible
+	 * @param dormant
+	 *            <tt>true</tt> if the client should keep the local instance
+	 *            for a possible revival
+	 */
+	public EntityEndMessage(DynamicEntityData data, boolean dormant) {
 		this.entityId = data.getId();
+		this.dormant = dormant;
 	}
 
 	public boolean isReliable() {
@@ -39,7 +39,6 @@ package mirrormonkey.core.messages;
 
 import mirrormonkey.core.member.ConstructorData;
 import mirrormonkey.framework.entity.DynamicEntityData;
-import mirrormonkey.framework.parameter.ValueUtil;
 
 import com.jme3.network.Message;
 import com.jme3.network.serializing.Serializable;
@@ -60,12 +59,20 @@ public class EntityInitMessage implements Message {
 	public int entityId;
 
 	/**
-	 * The name of the client-local class.
+	 * Numeric ID of the pair of client-local and server-local class, assigned
+	 * by the server per connection.
+	 */
+	public int classId;
+
+	/**
+	 * The name of the client-local class. Only transmitted the first time
+	 * <tt>classId</tt> is used for a connection, <tt>null</tt> otherwise.
 	 */
 	public String className;
 
 	/**
-	 * The name of the server-local class.
+	 * The name of the server-local class. Only transmitted the first time
+	 * <tt>classId</tt> is used for a connection, <tt>null</tt> otherwise.
 	 */
 	public String connectedClassName;
 
@@ -100,19 +107,28 @@ public class EntityInitMessage implements Message {
 	 * @param constr
 	 *            contains data about the constructor to be called to create the
 	 *            client-local instance
+	 * @param classId
+	 *            ID of the static data of <tt>constr</tt> for the receiving
+	 *            connection
+	 * @param defineClass
+	 *            <tt>true</tt> if the class names should be transmitted because
+	 *            <tt>classId</tt> has not been used for the receiving
+	 *            connection before
 	 * @param constrParams
 	 *            Arguments passed to <tt>callConstr</tt>. They will be packed
 	 *            according to the <tt>ParameterInterpreters</tt> present in
 	 *            <tt>constr</tt> by this constructor.
 	 */
 	public EntityInitMessage(DynamicEntityData data, ConstructorData constr,
-			Object... constrParams) {
+			int classId, boolean defineClass, Object... constrParams) {
 		entityId = data.getId();
-		className = constr.getConnectedClassName();
-		connectedClassName = constr.getLocalClassName();
+		this.classId = classId;
+		if (defineClass) {
+			className = constr.getConnectedClassName();
+			connectedClassName = constr.getLocalClassName();
+		}
 		constrId = constr.getId();
-		packedParams = ValueUtil.packData(constr.getInterpreters(),
-				constrParams);
+		packedParams = constr.packParams(constrParams);
 	}
 
 	public boolean isReliable() {
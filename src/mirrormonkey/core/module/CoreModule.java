@@ -37,6 +37,8 @@
 
 package mirrormonkey.core.module;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -49,15 +51,20 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
+import mirrormonkey.core.BatchedLifecycleListener;
 import mirrormonkey.core.EntityRegistrationListener;
 import mirrormonkey.core.InstanceInitializedEvent;
+import mirrormonkey.core.InstanceLifecycleEvent;
 import mirrormonkey.core.InstanceLifecycleListener;
 import mirrormonkey.core.InstanceRemovedEvent;
 import mirrormonkey.core.InstanceReplacedEvent;
+import mirrormonkey.core.LifecycleBatch;
 import mirrormonkey.core.annotations.CoreModulePresets;
 import mirrormonkey.core.messages.EntityChangeMessage;
 import mirrormonkey.core.messages.EntityEndMessage;
+import mirrormonkey.core.messages.EntityInitBatchMessage;
 import mirrormonkey.core.messages.EntityInitMessage;
+import mirrormonkey.core.messages.EntityReviveMessage;
 import mirrormonkey.framework.EntityProvider;
 import mirrormonkey.framework.SyncAppState;
 import mirrormonkey.framework.connection.ConnectionInfo;
@@ -70,7 +77,9 @@ import mirrormonkey.framework.entity.StaticEntityData;
 import mirrormonkey.framework.module.MirrorMonkeyModule;
 import mirrormonkey.util.listeners.ListenerConfiguration;
 
+import com.jme3.network.Message;
 import com.jme3.network.MessageConnection;
+import com.jme3.network.MessageListener;
 import com.jme3.network.serializing.Serializer;
 
 /**
@@ -91,8 +100,9 @@ public abstract class CoreModule<D extends DynamicEntityData, A extends SyncAppS
 	 * Contains classes of all messages used by the core module.
 	 */
 	private static final Class<?>[] LIFECYCLE_MESSAGES = {
-			EntityInitMessage.class, EntityEndMessage.class,
-			EntityChangeMessage.class };
+			EntityInitMessage.class, EntityInitBatchMessage.class,
+			EntityEndMessage.class, EntityChangeMessage.class,
+			EntityReviveMessage.class };
 
 	/**
 	 * Contains global <tt>InstanceLifecycleListeners</tt>, which will be
@@ -135,6 +145,22 @@ public abstract class CoreModule<D extends DynamicEntityData, A extends SyncAppS
 	 */
 	private final SortedSet<InstanceLifecycleListener> returnListenersListSingleton;
 
+	/**
+	 * Caches the merged and sorted <tt>InstanceLifecycleListeners</tt> that
+	 * are not bound to a specific entity, per connection and context. Tables
+	 * are indexed by the handle of the context plus one, index <tt>0</tt> is
+	 * used for events without context. Entries must be removed with
+	 * <tt>removeDispatchTables</tt> when their connection is destroyed because
+	 * the tables reference listeners of the connection.
+	 */
+	private final Map<ConnectionInfo<?>, DispatchTable[]> dispatchTables;
+
+	/**
+	 * Incremented whenever a class bound <tt>InstanceLifecycleListener</tt> is
+	 * added or removed.
+	 */
+	private int specificListenersVersion;
+
 	/**
 	 * Contains listeners that will be notified when an entity is registered or
 	 * unregistered.
@@ -147,6 +173,30 @@ public abstract class CoreModule<D extends DynamicEntityData, A extends SyncAppS
 	 */
 	private final UpdateEntityTracker<D> updateTracker;
 
+	/**
+	 * Number of nested calls to <tt>beginBatch</tt> that have not been matched
+	 * by a call to <tt>endBatch</tt> yet.
+	 */
+	private int batchDepth;
+
+	/**
+	 * Collects instance lifecycle events for
+	 * <tt>BatchedLifecycleListeners</tt> while batching, <tt>null</tt> if no
+	 * event occurred since the current batch began.
+	 */
+	private LifecycleBatch pendingBatch;
+
+	/**
+	 * Cached global <tt>BatchedLifecycleListeners</tt>.
+	 */
+	private BatchedLifecycleListener[] batchedListeners;
+
+	/**
+	 * Version of the global <tt>ListenerConfiguration</tt> when
+	 * <tt>batchedListeners</tt> was collected.
+	 */
+	private int batchedListenersVersion;
+
 	/**
 	 * Creates a new <tt>CoreModule</tt> with given <tt>SyncAppState</tt>
 	 * 
@@ -187,11 +237,15 @@ public abstract class CoreModule<D extends DynamicEntityData, A extends SyncAppS
 				new ListenerOrderComparator());
 		returnListenersListSingleton = Collections
 				.unmodifiableSortedSet(collectListenersListSingleton);
+		dispatchTables = new HashMap<ConnectionInfo<?>, DispatchTable[]>();
 
 		entityRegListeners = new HashSet<EntityRegistrationListener<D>>();
 
 		updateTracker = new UpdateEntityTracker<D>();
 		addEntityRegistrationListener(updateTracker);
+
+		batchedListeners = new BatchedLifecycleListener[0];
+		batchedListenersVersion = listenerConfiguration.getVersion() - 1;
 	}
 
 	@Override
@@ -199,6 +253,28 @@ public abstract class CoreModule<D extends DynamicEntityData, A extends SyncAppS
 		updateTracker.update(tpf);
 	}
 
+	/**
+	 * Sets the number of worker threads that update
+	 * <tt>UpdateAwareEntities</tt> declared thread safe by their
+	 * <tt>UpdateSchedule</tt>.
+	 * 
+	 * @param threads
+	 *            number of worker threads, <tt>1</tt> or less to update every
+	 *            entity on the main thread
+	 */
+	public void setUpdateThreads(int threads) {
+		updateTracker.setThreads(threads);
+	}
+
+	/**
+	 * @return number of worker threads that update thread safe
+	 *         <tt>UpdateAwareEntities</tt>, <tt>1</tt> if every entity is
+	 *         updated on the main thread
+	 */
+	public int getUpdateThreads() {
+		return updateTracker.getThreads();
+	}
+
 	/**
 	 * Adds a new <tt>EntityRegistrationListener</tt> that will be notified
 	 * whenever entities become registered or unregistered.
@@ -294,6 +370,7 @@ public abstract class CoreModule<D extends DynamicEntityData, A extends SyncAppS
 			}
 			previous.addListener(listener);
 		}
+		specificListenersVersion++;
 	}
 
 	/**
@@ -318,12 +395,19 @@ public abstract class CoreModule<D extends DynamicEntityData, A extends SyncAppS
 				}
 			}
 		}
+		specificListenersVersion++;
 	}
 
 	/**
 	 * Collects <tt>InstanceLifecycleListeners</tt> that must be notified for an
 	 * instance lifecycle event on a given entity, context and connection.
 	 * 
+	 * Listeners that are not bound to the entity itself are merged and sorted
+	 * only once per connection and context and cached until a listener is
+	 * added, removed or changes its sorting order. Only if the entity has
+	 * listeners of its own, they are merged into the cached ones for every
+	 * event.
+	 * 
 	 * @param entityData
 	 *            the <tt>DynamicEntityData</tt> representing an entity for
 	 *            which an instance lifecycle event has occurred
@@ -333,18 +417,73 @@ public abstract class CoreModule<D extends DynamicEntityData, A extends SyncAppS
 	 * @param info
 	 *            the <tt>ConnectionInfo</tt> containing data about the
 	 *            connection for which the instance lifecycle event occurred
-	 * @return a reference to <tt>returnListenersListSingleton</tt>, which is
-	 *         filled with listeners to notify by this method
+	 * @return the listeners to notify, in notification order
 	 */
 	protected Collection<InstanceLifecycleListener> collectListeners(
 			DynamicEntityData entityData, StaticEntityData staticEntityData,
 			ConnectionInfo<?> info) {
+		DispatchTable table = getDispatchTable(staticEntityData, info);
+		if (!entityData.hasInstanceLifecycleListeners()) {
+			return table.view;
+		}
+		collectListenersListSingleton.clear();
+		collectListenersListSingleton.addAll(table.view);
+		entityData
+				.collectInstanceLifecycleListeners(collectListenersListSingleton);
+		return returnListenersListSingleton;
+	}
+
+	/**
+	 * Discards the cached <tt>DispatchTables</tt> of a connection.
+	 * 
+	 * Internal use only. Called when the <tt>ConnectionInfo</tt> representing
+	 * the connection is destroyed.
+	 * 
+	 * @param info
+	 *            the connection whose cached tables should be discarded
+	 */
+	protected void removeDispatchTables(ConnectionInfo<?> info) {
+		dispatchTables.remove(info);
+	}
+
+	/**
+	 * Fetches the cached <tt>DispatchTable</tt> for a connection and context,
+	 * rebuilding it if it is missing or outdated.
+	 * 
+	 * @param staticEntityData
+	 *            the context in which the instance lifecycle event occurred,
+	 *            may be <tt>null</tt>
+	 * @param info
+	 *            the connection for which the instance lifecycle event
+	 *            occurred
+	 * @return an up-to-date <tt>DispatchTable</tt> for <tt>info</tt> and
+	 *         <tt>staticEntityData</tt>
+	 */
+	private DispatchTable getDispatchTable(StaticEntityData staticEntityData,
+			ConnectionInfo<?> info) {
+		int index = staticEntityData == null ? 0 : staticEntityData
+				.getHandle() + 1;
+		// contexts without handle have not been added to the entity provider
+		// and are not cached
+		boolean cached = staticEntityData == null || index > 0;
+		DispatchTable[] tables = dispatchTables.get(info);
+		if (tables == null || index >= tables.length) {
+			DispatchTable[] grown = new DispatchTable[Math.max(index + 1,
+					tables == null ? 16 : tables.length * 2)];
+			if (tables != null) {
+				System.arraycopy(tables, 0, grown, 0, tables.length);
+			}
+			tables = grown;
+			dispatchTables.put(info, tables);
+		}
+		DispatchTable table = cached ? tables[index] : null;
+		if (table != null && table.isValid(this, info)) {
+			return table;
+		}
 		collectListenersListSingleton.clear();
 		getListenerConfiguration().getListeners(
 				InstanceLifecycleListener.class, collectListenersListSingleton);
 		info.collectInstanceLifecycleListeners(collectListenersListSingleton);
-		entityData
-				.collectInstanceLifecycleListeners(collectListenersListSingleton);
 		if (staticEntityData != null) {
 			for (Class<?> c : staticEntityData.getNotifyClasses()) {
 				ListenerConfiguration lc = specificListeners.get(c);
@@ -354,7 +493,11 @@ public abstract class CoreModule<D extends DynamicEntityData, A extends SyncAppS
 				}
 			}
 		}
-		return returnListenersListSingleton;
+		table = new DispatchTable(this, info, collectListenersListSingleton);
+		if (cached) {
+			tables[index] = table;
+		}
+		return table;
 	}
 
 	/**
@@ -369,6 +512,8 @@ public abstract class CoreModule<D extends DynamicEntityData, A extends SyncAppS
 				e.staticData, e.connection)) {
 			i.instanceInitialized(e);
 		}
+		queueBatched(LifecycleBatch.Kind.INITIALIZED, e.connection,
+				e.staticData, e.dynamicData.getId(), e);
 	}
 
 	/**
@@ -402,6 +547,8 @@ public abstract class CoreModule<D extends DynamicEntityData, A extends SyncAppS
 				e.oldStaticData, e.connection)) {
 			i.instanceReplaced(e);
 		}
+		queueBatched(LifecycleBatch.Kind.REPLACED, e.connection,
+				e.oldStaticData, e.dynamicData.getId(), e);
 	}
 
 	/**
@@ -418,6 +565,8 @@ public abstract class CoreModule<D extends DynamicEntityData, A extends SyncAppS
 				e.newStaticData, e.connection)) {
 			i.instanceReplacing(e);
 		}
+		queueBatched(LifecycleBatch.Kind.REPLACING, e.connection,
+				e.newStaticData, e.dynamicData.getId(), e);
 	}
 
 	/**
@@ -433,6 +582,142 @@ public abstract class CoreModule<D extends DynamicEntityData, A extends SyncAppS
 				e.staticData, e.connection)) {
 			i.instanceRemoved(e);
 		}
+		queueBatched(LifecycleBatch.Kind.REMOVED, e.connection, e.staticData,
+				e.dynamicData.getId(), e);
+	}
+
+	/**
+	 * Passes an instance lifecycle event on to the global
+	 * <tt>BatchedLifecycleListeners</tt>. While batching, the event is
+	 * collected until the outermost batch ends, otherwise it is delivered
+	 * immediately.
+	 * 
+	 * @param kind
+	 *            the kind of <tt>event</tt>
+	 * @param connection
+	 *            the connection for which <tt>event</tt> occurred
+	 * @param staticData
+	 *            the context to group <tt>event</tt> by
+	 * @param entityId
+	 *            current ID of the entity of <tt>event</tt>
+	 * @param event
+	 *            the event that occurred
+	 */
+	private void queueBatched(LifecycleBatch.Kind kind,
+			ConnectionInfo<?> connection, StaticEntityData staticData,
+			int entityId, InstanceLifecycleEvent event) {
+		if (getBatchedListeners().length == 0) {
+			return;
+		}
+		if (batchDepth > 0) {
+			if (pendingBatch == null) {
+				pendingBatch = new LifecycleBatch();
+			}
+			pendingBatch.add(kind, connection, staticData, entityId, event);
+		} else {
+			LifecycleBatch batch = new LifecycleBatch();
+			batch.add(kind, connection, staticData, entityId, event);
+			deliverBatch(batch);
+		}
+	}
+
+	/**
+	 * @return the global <tt>BatchedLifecycleListeners</tt>, collected again
+	 *         if listeners have been added or removed since the last call
+	 */
+	private BatchedLifecycleListener[] getBatchedListeners() {
+		if (batchedListenersVersion != listenerConfiguration.getVersion()) {
+			List<BatchedLifecycleListener> l = new ArrayList<BatchedLifecycleListener>();
+			listenerConfiguration.getListeners(BatchedLifecycleListener.class,
+					l);
+			batchedListeners = l.toArray(new BatchedLifecycleListener[l.size()]);
+			batchedListenersVersion = listenerConfiguration.getVersion();
+		}
+		return batchedListeners;
+	}
+
+	/**
+	 * Passes a <tt>LifecycleBatch</tt> to every global
+	 * <tt>BatchedLifecycleListener</tt>.
+	 * 
+	 * @param batch
+	 *            the events to deliver
+	 */
+	private void deliverBatch(LifecycleBatch batch) {
+		for (BatchedLifecycleListener i : getBatchedListeners()) {
+			i.instancesChanged(batch);
+		}
+	}
+
+	/**
+	 * Begins a batch. Until the matching call to <tt>endBatch</tt>, instance
+	 * lifecycle events are collected for <tt>BatchedLifecycleListeners</tt>
+	 * and delivered as a single <tt>LifecycleBatch</tt> when the batch ends.
+	 * 
+	 * Batches may be nested. Events are only delivered when the outermost
+	 * batch ends.
+	 */
+	public void beginBatch() {
+		batchDepth++;
+	}
+
+	/**
+	 * Ends a batch that was begun by calling <tt>beginBatch</tt>. If this ends
+	 * the outermost batch, then all collected instance lifecycle events will
+	 * be delivered and <tt>batchEnded</tt> will be called.
+	 * 
+	 * @throws IllegalStateException
+	 *             if there is no batch to end
+	 */
+	public void endBatch() {
+		if (batchDepth == 0) {
+			throw new IllegalStateException("No batch has been begun.");
+		}
+		if (--batchDepth == 0) {
+			LifecycleBatch batch = pendingBatch;
+			pendingBatch = null;
+			if (batch != null) {
+				deliverBatch(batch);
+			}
+			batchEnded();
+		}
+	}
+
+	/**
+	 * @return <tt>true</tt> if <tt>beginBatch</tt> has been called more often
+	 *         than <tt>endBatch</tt>, <tt>false</tt> otherwise
+	 */
+	public boolean isBatching() {
+		return batchDepth > 0;
+	}
+
+	/**
+	 * Called when the outermost batch ends, after the collected instance
+	 * lifecycle events have been delivered. Does nothing by default.
+	 */
+	protected void batchEnded() {
+	}
+
+	/**
+	 * Holds back a message concerning an entity that has been announced but
+	 * not yet instantiated locally, so that it can be passed to its listener
+	 * once the entity has been instantiated.
+	 * 
+	 * Returns <tt>false</tt> by default, as only the client may defer
+	 * instantiation.
+	 * 
+	 * @param entityId
+	 *            ID of the entity that <tt>message</tt> concerns
+	 * @param listener
+	 *            the listener that is currently handling <tt>message</tt>
+	 * @param message
+	 *            the message to hold back
+	 * @return <tt>true</tt> if <tt>message</tt> was held back and must not be
+	 *         handled now, <tt>false</tt> otherwise
+	 */
+	public boolean deferIfPending(int entityId,
+			MessageListener<MessageConnection> listener, Message message) {
+		return false;
 	}
 
 	/**
@@ -464,6 +749,94 @@ public abstract class CoreModule<D extends DynamicEntityData, A extends SyncAppS
 		return listenerConfiguration;
 	}
 
+	/**
+	 * Merged and sorted <tt>InstanceLifecycleListeners</tt> for a connection
+	 * and context, together with the state of every source they were collected
+	 * from.
+	 * 
+	 * @author Philipp Christian Loewner
+	 * 
+	 */
+	private static final class DispatchTable {
+
+		/**
+		 * The listeners in notification order.
+		 */
+		final InstanceLifecycleListener[] listeners;
+
+		/**
+		 * Sorting order of every listener at the time it was collected.
+		 */
+		final int[] orders;
+
+		/**
+		 * Read-only view of <tt>listeners</tt>.
+		 */
+		final List<InstanceLifecycleListener> view;
+
+		/**
+		 * Version of the global listeners when the table was built.
+		 */
+		final int globalVersion;
+
+		/**
+		 * Version of the class bound listeners when the table was built.
+		 */
+		final int specificVersion;
+
+		/**
+		 * Version of the connection's listeners when the table was built.
+		 */
+		final int connectionVersion;
+
+		/**
+		 * Creates a new <tt>DispatchTable</tt> from collected listeners.
+		 * 
+		 * @param module
+		 *            the core module that collected the listeners
+		 * @param info
+		 *            the connection for which the listeners were collected
+		 * @param collected
+		 *            the collected listeners in notification order
+		 */
+		DispatchTable(CoreModule<?, ?> module, ConnectionInfo<?> info,
+				Collection<InstanceLifecycleListener> collected) {
+			listeners = collected
+					.toArray(new InstanceLifecycleListener[collected.size()]);
+			orders = new int[listeners.length];
+			for (int i = 0; i < listeners.length; i++) {
+				orders[i] = listeners[i].getSortingOrder();
+			}
+			view = Collections.unmodifiableList(Arrays.asList(listeners));
+			globalVersion = module.getListenerConfiguration().getVersion();
+			specificVersion = module.specificListenersVersion;
+			connectionVersion = info.getListenerVersion();
+		}
+
+		/**
+		 * @param module
+		 *            the core module that collected the listeners
+		 * @param info
+		 *            the connection for which the listeners were collected
+		 * @return <tt>true</tt> if no listener was added or removed and no
+		 *         sorting order changed since this table was built
+		 */
+		boolean isValid(CoreModule<?, ?> module, ConnectionInfo<?> info) {
+			if (globalVersion != module.getListenerConfiguration().getVersion()
+					|| specificVersion != module.specificListenersVersion
+					|| connectionVersion != info.getListenerVersion()) {
+				return false;
+			}
+			for (int i = 0; i < listeners.length; i++) {
+				if (orders[i] != listeners[i].getSortingOrder()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
 	/**
 	 * Sorts <tt>InstanceLifecycleListeners</tt> in ascending order according to
 	 * the values returned by their <tt>getSortingOrder</tt> methods.
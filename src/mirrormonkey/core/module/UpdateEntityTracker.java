@@ -37,11 +37,20 @@
 
 package mirrormonkey.core.module;
 
-import java.util.Collection;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import mirrormonkey.core.EntityRegistrationListener;
 import mirrormonkey.core.UpdateAwareEntity;
+import mirrormonkey.core.annotations.UpdateSchedule;
 import mirrormonkey.framework.entity.DynamicEntityData;
 import mirrormonkey.framework.entity.SyncEntity;
 
@@ -49,6 +58,12 @@ import mirrormonkey.framework.entity.SyncEntity;
  * Tracks local instances of entities that implement <tt>UpdateAwareEntity</tt>
  * to update them during the main loop.
  * 
+ * Entities annotated with <tt>UpdateSchedule</tt> are updated at their
+ * declared rate instead of on every frame, and entities with the same rate are
+ * spread across frames. If parallel updates are enabled, then entities that
+ * declare themselves thread safe are updated on a pool of worker threads after
+ * all other entities have been updated on the calling thread.
+ * 
  * @author Philipp Christian Loewner
  * 
  * @param <D>
@@ -58,47 +73,339 @@ public class UpdateEntityTracker<D extends DynamicEntityData> implements
 		EntityRegistrationListener<D> {
 
 	/**
-	 * Contains all local instances of all visible entities where the local
+	 * Fractional part of the golden ratio, used to spread the first updates of
+	 * entities with the same rate evenly across their interval.
+	 */
+	private static final double PHASE_STEP = 0.6180339887498949;
+
+	/**
+	 * Schedule for entities without <tt>UpdateSchedule</tt> annotation.
+	 */
+	private static final Schedule DEFAULT_SCHEDULE = new Schedule(0f, false);
+
+	/**
+	 * Contains the tracking entries of all visible entities where the local
 	 * instance implements <tt>UpdateAwareEntity</tt>.
 	 */
-	private final Collection<D> activeEntities;
+	private final Map<D, Entry> activeEntities;
+
+	/**
+	 * Array snapshot of the values of <tt>activeEntities</tt>, or
+	 * <tt>null</tt> if it must be rebuilt.
+	 */
+	private Entry[] snapshot;
+
+	/**
+	 * Caches the schedule of every local class that was tracked so far.
+	 */
+	private final Map<Class<?>, Schedule> schedules;
+
+	/**
+	 * Phase of the next tracked entity, in fractions of its interval.
+	 */
+	private double nextPhase;
+
+	/**
+	 * Runs updates of thread safe entities, or <tt>null</tt> if every entity
+	 * is updated on the calling thread.
+	 */
+	private ExecutorService executor;
+
+	/**
+	 * Number of worker threads of <tt>executor</tt>.
+	 */
+	private int threads;
+
+	/**
+	 * Collects thread safe entities that are due during the current update.
+	 */
+	private final List<Entry> parallelDue;
 
 	/**
 	 * Creates a new <tt>UpdateAwareEntityTracker</tt>.
 	 */
 	public UpdateEntityTracker() {
-		activeEntities = new HashSet<D>();
+		activeEntities = new HashMap<D, Entry>();
+		schedules = new HashMap<Class<?>, Schedule>();
+		parallelDue = new ArrayList<Entry>();
+	}
+
+	/**
+	 * Starts tracking the local instance of an entity.
+	 * 
+	 * @param data
+	 *            data about the entity
+	 * @param instance
+	 *            the local instance of the entity
+	 */
+	private void track(D data, SyncEntity instance) {
+		Schedule s = getSchedule(instance.getClass());
+		Entry e = new Entry((UpdateAwareEntity) instance, s);
+		if (s.interval > 0f) {
+			e.phase = (float) (nextPhase * s.interval);
+			nextPhase = (nextPhase + PHASE_STEP) % 1.0;
+		}
+		activeEntities.put(data, e);
+		snapshot = null;
+	}
+
+	/**
+	 * Stops tracking the local instance of an entity.
+	 * 
+	 * @param data
+	 *            data about the entity
+	 */
+	private void untrack(D data) {
+		Entry e = activeEntities.remove(data);
+		if (e != null) {
+			e.active = false;
+			snapshot = null;
+		}
+	}
+
+	/**
+	 * Fetches the schedule declared for a local class.
+	 * 
+	 * @param c
+	 *            a local class implementing <tt>UpdateAwareEntity</tt>
+	 * @return the schedule for instances of <tt>c</tt>
+	 */
+	private Schedule getSchedule(Class<?> c) {
+		Schedule s = schedules.get(c);
+		if (s == null) {
+			UpdateSchedule annot = c.getAnnotation(UpdateSchedule.class);
+			s = annot == null ? DEFAULT_SCHEDULE : new Schedule(
+					annot.rate() > 0f ? 1f / annot.rate() : 0f,
+					annot.threadSafe());
+			schedules.put(c, s);
+		}
+		return s;
 	}
 
 	public void entityRegistered(D data) {
 		if (UpdateAwareEntity.class.isInstance(data.getLocalInstance())) {
-			activeEntities.add(data);
+			track(data, data.getLocalInstance());
 		}
 	}
 
 	public void localInstanceChanged(D data, SyncEntity oldInstance,
 			SyncEntity newInstance) {
-		activeEntities.remove(data);
+		untrack(data);
 		if (UpdateAwareEntity.class.isInstance(newInstance)) {
-			activeEntities.add(data);
+			track(data, newInstance);
 		}
 	}
 
 	public void entityRemoved(D data) {
-		activeEntities.remove(data);
+		untrack(data);
+	}
+
+	/**
+	 * Sets the number of worker threads that update thread safe entities.
+	 * 
+	 * @param threads
+	 *            number of worker threads, <tt>1</tt> or less to update every
+	 *            entity on the calling thread
+	 */
+	public void setThreads(int threads) {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+		this.threads = threads > 1 ? threads : 1;
+		if (this.threads > 1) {
+			executor = Executors.newFixedThreadPool(this.threads,
+					new ThreadFactory() {
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "UpdateEntityTracker");
+							t.setDaemon(true);
+							return t;
+						}
+					});
+		}
+	}
+
+	/**
+	 * @return number of worker threads that update thread safe entities,
+	 *         <tt>1</tt> if every entity is updated on the calling thread
+	 */
+	public int getThreads() {
+		return executor == null ? 1 : threads;
 	}
 
 	/**
 	 * Updates every local instance of every entity that implements
-	 * <tt>UpdateAwareEntity</tt>.
+	 * <tt>UpdateAwareEntity</tt> and is due.
 	 * 
 	 * @param tpf
 	 *            time passed since last call, in seconds
 	 */
 	public void update(float tpf) {
-		for (DynamicEntityData d : activeEntities) {
-			((UpdateAwareEntity) d.getLocalInstance()).update(tpf);
+		if (snapshot == null) {
+			snapshot = activeEntities.values().toArray(
+					new Entry[activeEntities.size()]);
+		}
+		for (Entry e : snapshot) {
+			e.sinceUpdate += tpf;
+			if (e.schedule.interval > 0f) {
+				e.phase += tpf;
+				if (e.phase < e.schedule.interval) {
+					continue;
+				}
+				e.phase -= e.schedule.interval;
+				if (e.phase >= e.schedule.interval) {
+					e.phase = 0f;
+				}
+			}
+			if (executor != null && e.schedule.threadSafe) {
+				parallelDue.add(e);
+			} else if (e.active) {
+				e.update();
+			}
+		}
+		if (!parallelDue.isEmpty()) {
+			try {
+				updateParallel();
+			} finally {
+				parallelDue.clear();
+			}
+		}
+	}
+
+	/**
+	 * Updates the entities in <tt>parallelDue</tt> on the worker threads and
+	 * waits until they are done.
+	 */
+	private void updateParallel() {
+		int chunk = (parallelDue.size() + threads - 1) / threads;
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(threads);
+		for (int i = 0; i < parallelDue.size(); i += chunk) {
+			final List<Entry> part = parallelDue.subList(i,
+					Math.min(i + chunk, parallelDue.size()));
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					for (Entry e : part) {
+						if (e.active) {
+							e.update();
+						}
+					}
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Object> f : executor.invokeAll(tasks)) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(
+					"Interrupted while updating entities.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Update interval and thread safety declared for a local class.
+	 * 
+	 * @author Philipp Christian Loewner
+	 * 
+	 */
+	private static final class Schedule {
+
+		/**
+		 * Seconds between updates, <tt>0</tt> to update on every frame.
+		 */
+		final float interval;
+
+		/**
+		 * <tt>true</tt> if instances may be updated on worker threads.
+		 */
+		final boolean threadSafe;
+
+		/**
+		 * Creates a new <tt>Schedule</tt>.
+		 * 
+		 * @param interval
+		 *            seconds between updates, <tt>0</tt> to update on every
+		 *            frame
+		 * @param threadSafe
+		 *            <tt>true</tt> if instances may be updated on worker
+		 *            threads
+		 */
+		Schedule(float interval, boolean threadSafe) {
+			this.interval = interval;
+			this.threadSafe = threadSafe;
+		}
+
+	}
+
+	/**
+	 * Tracking state of a single local instance.
+	 * 
+	 * @author Philipp Christian Loewner
+	 * 
+	 */
+	private static final class Entry {
+
+		/**
+		 * The tracked local instance.
+		 */
+		final UpdateAwareEntity instance;
+
+		/**
+		 * Schedule of the class of <tt>instance</tt>.
+		 */
+		final Schedule schedule;
+
+		/**
+		 * Seconds since the last scheduled update, may lag behind when updates
+		 * were delayed by long frames.
+		 */
+		float phase;
+
+		/**
+		 * Seconds since <tt>instance</tt> was last updated or started being
+		 * tracked.
+		 */
+		float sinceUpdate;
+
+		/**
+		 * <tt>false</tt> once <tt>instance</tt> is no longer tracked.
+		 */
+		volatile boolean active;
+
+		/**
+		 * Creates a new <tt>Entry</tt>.
+		 * 
+		 * @param instance
+		 *            the tracked local instance
+		 * @param schedule
+		 *            schedule of the class of <tt>instance</tt>
+		 */
+		Entry(UpdateAwareEntity instance, Schedule schedule) {
+			this.instance = instance;
+			this.schedule = schedule;
+			active = true;
 		}
+
+		/**
+		 * Updates <tt>instance</tt> with the time passed since its last
+		 * update.
+		 */
+		void update() {
+			float tpf = sinceUpdate;
+			sinceUpdate = 0f;
+			instance.update(tpf);
+		}
+
 	}
 
 }
@@ -37,10 +37,11 @@
 
 package mirrormonkey.core.server;
 
+import java.util.AbstractCollection;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import mirrormonkey.framework.entity.StaticEntityData;
 import mirrormonkey.framework.member.DynamicMemberData;
@@ -77,29 +78,29 @@ public class Interpretation {
 	private final DynamicMemberData[] dynamicData;
 
 	/**
-	 * Contains data about all connections that this <tt>Interpretation</tt> is
-	 * visible to, even if the context of this <tt>Interpretation</tt> is not on
-	 * top of the mapping stack for <tt>entity</tt> and those connections.
+	 * Contains a set bit for the slot of every connection that this
+	 * <tt>Interpretation</tt> is visible to, even if the context of this
+	 * <tt>Interpretation</tt> is not on top of the mapping stack for
+	 * <tt>entity</tt> and those connections.
 	 */
-	private final Set<ServerConnectionInfo> allConnections;
+	private final BitSet allConnections;
 
 	/**
-	 * Contains the same elements as <tt>allConnections</tt> to be able to
-	 * return them without risking inconsistent state.
+	 * Read-only view of the connections in <tt>allConnections</tt>.
 	 */
-	private final Set<ServerConnectionInfo> allConnectionsUmod;
+	private final Collection<ServerConnectionInfo> allConnectionsUmod;
 
 	/**
-	 * Contains data about all connections that this <tt>Interpretation</tt> is
-	 * visible to and where <tt>staticData</tt> is on top of the mapping stack.
+	 * Contains a set bit for the slot of every connection that this
+	 * <tt>Interpretation</tt> is visible to and where <tt>staticData</tt> is
+	 * on top of the mapping stack.
 	 */
-	private final Set<ServerConnectionInfo> activeConnections;
+	private final BitSet activeConnections;
 
 	/**
-	 * Contains the same elements as <tt>activeConnections</tt> to be able to
-	 * return them without risking inconsistent state.
+	 * Read-only view of the connections in <tt>activeConnections</tt>.
 	 */
-	private final Set<ServerConnectionInfo> activeConnectionsUmod;
+	private final Collection<ServerConnectionInfo> activeConnectionsUmod;
 
 	/**
 	 * Creates a new <tt>Interpretation</tt> that will store information about a
@@ -116,10 +117,10 @@ public class Interpretation {
 		this.entity = entity;
 		this.staticData = staticData;
 		dynamicData = staticData.createDynamicMemberData(entity);
-		allConnections = new LinkedHashSet<ServerConnectionInfo>();
-		allConnectionsUmod = Collections.unmodifiableSet(allConnections);
-		activeConnections = new LinkedHashSet<ServerConnectionInfo>();
-		activeConnectionsUmod = Collections.unmodifiableSet(activeConnections);
+		allConnections = new BitSet();
+		allConnectionsUmod = new SlotView(allConnections);
+		activeConnections = new BitSet();
+		activeConnectionsUmod = new SlotView(activeConnections);
 	}
 
 	/**
@@ -185,7 +186,7 @@ public class Interpretation {
 	 */
 	protected void makeActive(ServerConnectionInfo info) {
 		add(info);
-		activeConnections.add(info);
+		activeConnections.set(info.getSlot());
 	}
 
 	/**
@@ -199,7 +200,9 @@ public class Interpretation {
 	 *            data about the connection
 	 */
 	protected void makePassive(ServerConnectionInfo info) {
-		activeConnections.remove(info);
+		if (info.peekSlot() >= 0) {
+			activeConnections.clear(info.peekSlot());
+		}
 	}
 
 	/**
@@ -214,7 +217,7 @@ public class Interpretation {
 	 */
 	protected void add(ServerConnectionInfo info) {
 		boolean wasEmpty = isEmpty();
-		allConnections.add(info);
+		allConnections.set(info.getSlot());
 		if (wasEmpty) {
 			entity.interpretationCreationCallback(this);
 		}
@@ -232,10 +235,88 @@ public class Interpretation {
 	protected void remove(ServerConnectionInfo info) {
 		boolean wasEmpty = isEmpty();
 		makePassive(info);
-		allConnections.remove(info);
+		if (info.peekSlot() >= 0) {
+			allConnections.clear(info.peekSlot());
+		}
 		if (!wasEmpty && isEmpty()) {
 			entity.interpretationDestructionCallback(this);
 		}
 	}
 
+	/**
+	 * Read-only collection of the connections whose slots are set in a
+	 * <tt>BitSet</tt>, in ascending slot order.
+	 * 
+	 * @author Philipp Christian Loewner
+	 * 
+	 */
+	private final class SlotView extends
+			AbstractCollection<ServerConnectionInfo> {
+
+		/**
+		 * Contains the slots of the connections in this collection.
+		 */
+		private final BitSet bits;
+
+		/**
+		 * Creates a new <tt>SlotView</tt> for a given <tt>BitSet</tt>.
+		 * 
+		 * @param bits
+		 *            contains the slots of the connections in this collection
+		 */
+		SlotView(BitSet bits) {
+			this.bits = bits;
+		}
+
+		@Override
+		public Iterator<ServerConnectionInfo> iterator() {
+			return new Iterator<ServerConnectionInfo>() {
+
+				/**
+				 * Slot of the next connection or <tt>-1</tt> at the end.
+				 */
+				private int next = bits.nextSetBit(0);
+
+				public boolean hasNext() {
+					return next >= 0;
+				}
+
+				public ServerConnectionInfo next() {
+					if (next < 0) {
+						throw new NoSuchElementException();
+					}
+					ServerConnectionInfo info = entity.module
+							.getSlotData(next);
+					next = bits.nextSetBit(next + 1);
+					return info;
+				}
+
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return bits.cardinality();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return bits.isEmpty();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof ServerConnectionInfo)) {
+				return false;
+			}
+			int slot = ((ServerConnectionInfo) o).peekSlot();
+			return slot >= 0 && bits.get(slot)
+					&& entity.module.getSlotData(slot) == o;
+		}
+
+	}
+
 }
@@ -46,6 +46,7 @@ import mirrormonkey.core.member.SearchKey;
 import mirrormonkey.core.messages.EntityChangeMessage;
 import mirrormonkey.core.messages.EntityEndMessage;
 import mirrormonkey.core.messages.EntityInitMessage;
+import mirrormonkey.core.messages.EntityReviveMessage;
 import mirrormonkey.framework.entity.StaticEntityData;
 import mirrormonkey.framework.entity.SyncEntity;
 import mirrormonkey.framework.parameter.AssetInterpreter;
@@ -225,7 +226,21 @@ public class MappingStack {
 	 *            context info held by the current top-most element
 	 */
 	protected void destroy(StaticEntityData staticData) {
-		notifyDestroy(staticData);
+		destroy(staticData, false);
+	}
+
+	/**
+	 * Removes every element from this <tt>MappingStack</tt>.
+	 * 
+	 * @param staticData
+	 *            context info held by the current top-most element
+	 * @param mayBeDormant
+	 *            <tt>true</tt> if the entity became invisible because its
+	 *            last reference was removed, so that the connection may keep
+	 *            it dormant
+	 */
+	private void destroy(StaticEntityData staticData, boolean mayBeDormant) {
+		notifyDestroy(staticData, mayBeDormant);
 		while (getBottom().exists()) {
 			getBottom().remove();
 		}
@@ -233,6 +248,34 @@ public class MappingStack {
 		entity.stackDestructionCallback(this);
 	}
 
+	/**
+	 * Removes every element from this <tt>MappingStack</tt> as part of tearing
+	 * down its whole connection. Listeners are notified as usual, but the
+	 * connection is neither asked whether it should be destroyed, nor is this
+	 * stack removed from it. Nothing is done if this stack is already empty.
+	 * 
+	 * Internal use only. Called by <tt>ServerConnectionInfo.destroy</tt>.
+	 * 
+	 * @param sendEnd
+	 *            <tt>true</tt> if an <tt>EntityEndMessage</tt> should be sent,
+	 *            <tt>false</tt> if the connection was closed anyway
+	 */
+	protected void teardown(boolean sendEnd) {
+		MappingStackElement top = getTop();
+		if (!top.exists()) {
+			return;
+		}
+		entity.module.notifyEndListeners(new InstanceRemovedEvent(entity
+				.getLocalInstance(), entity, top.getStaticData(), connection));
+		if (sendEnd) {
+			connection.send(new EntityEndMessage(entity));
+		}
+		while (getBottom().exists()) {
+			getBottom().remove();
+		}
+		entity.stackDestructionCallback(this);
+	}
+
 	/**
 	 * This is the main method for managing elements of this
 	 * <tt>MappingStack</tt> whenever a constructor should be called on the
@@ -299,8 +342,10 @@ public class MappingStack {
 			boolean wasEmpty = isEmpty();
 			e.insertAfter(prev);
 			if (wasEmpty) {
-				connection.stackCreationCallback(entity, this);
+				// entity first: registering again may assign a new ID, which
+				// the connection must already see
 				entity.stackCreationCallback(this);
+				connection.stackCreationCallback(entity, this);
 				notifyInit(cd, key);
 			} else if (e.isTop()) {
 				notifyChange(prev.getStaticData(), cd, key);
@@ -343,7 +388,7 @@ public class MappingStack {
 			toDrain.removeRef();
 		}
 		if (!toDrain.getPrev().exists() && !toDrain.getNext().exists()) {
-			destroy();
+			destroy(toDrain.getStaticData(), true);
 		} else if (toDrain.getNext().exists()) {
 			toDrain.remove();
 		} else {
@@ -396,7 +441,7 @@ public class MappingStack {
 		toRemove.removeRef();
 		if (!toRemove.hasRefs()) {
 			if (!toRemove.getPrev().exists() && !toRemove.getNext().exists()) {
-				destroy();
+				destroy(toRemove.getStaticData(), true);
 			} else if (toRemove.getNext().exists()) {
 				toRemove.remove();
 			} else {
@@ -415,7 +460,9 @@ public class MappingStack {
 
 	/**
 	 * Sends an <tt>EntityInitMessage</tt> to <tt>connection</tt> and dispatches
-	 * an <tt>InstanceInitializedEvent</tt> to the listeners concerned.
+	 * an <tt>InstanceInitializedEvent</tt> to the listeners concerned. If the
+	 * entity is dormant on <tt>connection</tt> and can be revived, then an
+	 * <tt>EntityReviveMessage</tt> is sent instead.
 	 * 
 	 * @param cd
 	 *            data about the constructor that should be called on the client
@@ -425,7 +472,20 @@ public class MappingStack {
 	 *            constructor and was used to find it
 	 */
 	private void notifyInit(ConstructorData cd, SearchKey key) {
-		connection.send(new EntityInitMessage(entity, cd, key.getParameters()));
+		if (connection.revive(entity, cd, key)) {
+			connection.send(new EntityReviveMessage(entity));
+			entity.module.notifyInitListeners(new InstanceInitializedEvent(
+					entity.getLocalInstance(), entity, cd.getStaticData(),
+					connection, true));
+			return;
+		}
+		int classId = connection.getClassId(cd.getStaticData());
+		boolean defineClass = classId < 0;
+		if (defineClass) {
+			classId = connection.assignClassId(cd.getStaticData());
+		}
+		connection.send(new EntityInitMessage(entity, cd, classId,
+				defineClass, key.getParameters()));
 		entity.module.notifyInitListeners(new InstanceInitializedEvent(entity
 				.getLocalInstance(), entity, cd.getStaticData(), connection));
 	}
@@ -448,8 +508,13 @@ public class MappingStack {
 				entity.getLocalInstance(), entity.getLocalInstance(), entity,
 				oldStaticData, cd.getStaticData(), connection);
 		entity.module.notifyReplacedListeners(e);
-		connection
-				.send(new EntityChangeMessage(entity, cd, key.getParameters()));
+		int classId = connection.getClassId(cd.getStaticData());
+		boolean defineClass = classId < 0;
+		if (defineClass) {
+			classId = connection.assignClassId(cd.getStaticData());
+		}
+		connection.send(new EntityChangeMessage(entity, cd, classId,
+				defineClass, key.getParameters()));
 		entity.module.notifyReplacingListeners(e);
 	}
 
@@ -459,11 +524,17 @@ public class MappingStack {
 	 * 
 	 * @param staticData
 	 *            the context in which the entity was visible to the client
+	 * @param mayBeDormant
+	 *            <tt>true</tt> if the connection may keep the entity dormant
 	 */
-	private void notifyDestroy(StaticEntityData staticData) {
+	private void notifyDestroy(StaticEntityData staticData,
+			boolean mayBeDormant) {
 		entity.module.notifyEndListeners(new InstanceRemovedEvent(entity
 				.getLocalInstance(), entity, staticData, connection));
-		connection.send(new EntityEndMessage(entity));
+		MappingStackElement top = getTop();
+		boolean dormant = mayBeDormant
+				&& connection.suspend(entity, top.fetchConstr(), top.getKey());
+		connection.send(new EntityEndMessage(entity, dormant));
 	}
 
 	/**
@@ -562,16 +633,19 @@ public class MappingStack {
 
 		@Override
 		protected ConstructorData fetchConstr() {
-			return interpretation.getStaticData().getData(key,
-					ConstructorData.class);
+			if (key == null) {
+				return null;
+			}
+			return interpretation.getStaticData().getConstructorIndex()
+					.find(key);
 		}
 
 		@Override
 		protected ConstructorData fetchConstrAndAddRef(boolean override,
 				SearchKey key) {
 			SearchKey searchFor = override ? key : this.key;
-			ConstructorData cd = interpretation.getStaticData().getData(
-					searchFor, ConstructorData.class);
+			ConstructorData cd = interpretation.getStaticData()
+					.getConstructorIndex().find(searchFor);
 			if (cd == null) {
 				throw new ConstructorNotFoundException(searchFor.toString());
 			}
@@ -37,15 +37,27 @@
 
 package mirrormonkey.core.server;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 import mirrormonkey.core.InstanceLifecycleListener;
+import mirrormonkey.core.member.ConstructorData;
+import mirrormonkey.core.member.SearchKey;
+import mirrormonkey.core.messages.EntityEndMessage;
+import mirrormonkey.core.messages.EntityInitBatchMessage;
+import mirrormonkey.core.messages.EntityInitMessage;
 import mirrormonkey.framework.ServerSyncAppState;
 import mirrormonkey.framework.connection.ConnectionInfo;
+import mirrormonkey.framework.entity.StaticEntityData;
+import mirrormonkey.util.IntMap;
 
 import com.jme3.network.ConnectionListener;
 import com.jme3.network.HostedConnection;
+import com.jme3.network.Message;
 import com.jme3.network.MessageConnection;
 import com.jme3.network.Server;
 
@@ -61,6 +73,12 @@ import com.jme3.network.Server;
 public class ServerConnectionInfo extends ConnectionInfo<ServerSyncAppState>
 		implements ConnectionListener {
 
+	/**
+	 * Maximum number of <tt>EntityInitMessages</tt> that will be packed into a
+	 * single <tt>EntityInitBatchMessage</tt>.
+	 */
+	public static final int MAX_BATCH_SIZE = 64;
+
 	/**
 	 * The <tt>CoreModule</tt> responsible for storing a reference to this
 	 * <tt>ServerConnectionInfo</tt> and data about the entities
@@ -74,6 +92,49 @@ public class ServerConnectionInfo extends ConnectionInfo<ServerSyncAppState>
 	 */
 	private final Map<Integer, MappingStack> entities;
 
+	/**
+	 * Contains <tt>EntityInitMessages</tt> that were sent while the core module
+	 * was batching and that have not been flushed yet.
+	 */
+	private final List<EntityInitMessage> pendingInits;
+
+	/**
+	 * Numeric class IDs that have been announced to the represented
+	 * connection, indexed by the handle of the static entity data they were
+	 * assigned to. Unassigned entries are <tt>-1</tt>.
+	 */
+	private int[] classIds;
+
+	/**
+	 * Number of class IDs assigned so far.
+	 */
+	private int classIdCount;
+
+	/**
+	 * Dense slot index of this <tt>ServerConnectionInfo</tt> in the core
+	 * module, or <tt>-1</tt> if no slot has been assigned yet.
+	 */
+	private int slot;
+
+	/**
+	 * <tt>true</tt> while <tt>destroy</tt> removes the mapping stacks of this
+	 * <tt>ServerConnectionInfo</tt>.
+	 */
+	private boolean tearingDown;
+
+	/**
+	 * Maps entity IDs to entities that are dormant on the represented
+	 * connection.
+	 */
+	private final IntMap<DormantEntity> dormant;
+
+	/**
+	 * Dormant entities in the order in which their grace periods end. Entries
+	 * that were revived or ended early stay in here until their grace period
+	 * ends.
+	 */
+	private final LinkedList<DormantEntity> dormantQueue;
+
 	/**
 	 * Creates a new <tt>ServerConnectionInfo</tt> that is owned by a given
 	 * <tt>SyncAppState</tt> and represents a given <tt>MessageConnection</tt>
@@ -90,6 +151,240 @@ public class ServerConnectionInfo extends ConnectionInfo<ServerSyncAppState>
 		super(appState, connection, false);
 		module = appState.getModule(ServerCoreModule.class);
 		entities = new HashMap<Integer, MappingStack>();
+		pendingInits = new ArrayList<EntityInitMessage>();
+		classIds = new int[0];
+		slot = -1;
+		dormant = new IntMap<DormantEntity>();
+		dormantQueue = new LinkedList<DormantEntity>();
+	}
+
+	/**
+	 * Fetches the dense slot index of this <tt>ServerConnectionInfo</tt>,
+	 * assigning one if necessary. Slots are assigned as soon as an entity
+	 * becomes visible and released when this instance is destroyed.
+	 * 
+	 * Internal use only.
+	 * 
+	 * @return the slot index of this <tt>ServerConnectionInfo</tt>
+	 */
+	protected int getSlot() {
+		if (slot < 0) {
+			slot = module.assignSlot(this);
+		}
+		return slot;
+	}
+
+	/**
+	 * Internal use only.
+	 * 
+	 * @return the slot index of this <tt>ServerConnectionInfo</tt> or
+	 *         <tt>-1</tt> if none has been assigned
+	 */
+	protected int peekSlot() {
+		return slot;
+	}
+
+	/**
+	 * Fetches the numeric class ID that lifecycle messages use to refer to a
+	 * pair of local and connected class on the represented connection.
+	 * 
+	 * Internal use only.
+	 * 
+	 * @param staticData
+	 *            the server-side static data of the pair
+	 * @return the ID for <tt>staticData</tt>, or <tt>-1</tt> if no ID has
+	 *         been assigned yet
+	 */
+	protected int getClassId(StaticEntityData staticData) {
+		int handle = staticData.getHandle();
+		return handle >= 0 && handle < classIds.length ? classIds[handle]
+				: -1;
+	}
+
+	/**
+	 * Assigns the next free numeric class ID to a pair of local and connected
+	 * class. The caller is responsible for sending the class names together
+	 * with the first message that uses the new ID.
+	 * 
+	 * Internal use only.
+	 * 
+	 * @param staticData
+	 *            the server-side static data of the pair
+	 * @return the newly assigned ID
+	 */
+	protected int assignClassId(StaticEntityData staticData) {
+		int handle = staticData.getHandle();
+		if (handle < 0) {
+			throw new IllegalArgumentException(
+					"Static data has not been added to the entity provider: "
+							+ staticData);
+		}
+		if (handle >= classIds.length) {
+			int[] grown = new int[Math.max(handle + 1, classIds.length * 2)];
+			System.arraycopy(classIds, 0, grown, 0, classIds.length);
+			Arrays.fill(grown, classIds.length, grown.length, -1);
+			classIds = grown;
+		}
+		classIds[handle] = classIdCount;
+		return classIdCount++;
+	}
+
+	/**
+	 * Called when an entity becomes invisible to the represented connection
+	 * because its last reference was removed. If a grace period is set in the
+	 * core module, then the entity is kept dormant for that time.
+	 * 
+	 * Internal use only.
+	 * 
+	 * @param entity
+	 *            the entity that becomes invisible
+	 * @param constr
+	 *            the constructor that created the client-local instance, may
+	 *            be <tt>null</tt>
+	 * @param key
+	 *            contains the parameters that were passed to <tt>constr</tt>
+	 * @return <tt>true</tt> if the entity is now dormant and the client should
+	 *         keep its local instance, <tt>false</tt> if it should be ended
+	 */
+	protected boolean suspend(ServerEntityData entity,
+			ConstructorData constr, SearchKey key) {
+		long gracePeriod = module.getRevivalGracePeriod();
+		if (gracePeriod == 0 || !running || constr == null) {
+			return false;
+		}
+		DormantEntity d = new DormantEntity(entity, constr, key
+				.getParameters().clone(), System.nanoTime() + gracePeriod);
+		dormant.put(entity.getId(), d);
+		dormantQueue.add(d);
+		entity.dormancyCreated(this);
+		return true;
+	}
+
+	/**
+	 * Called when an entity becomes visible to the represented connection. If
+	 * it is dormant and the same constructor is called with the same
+	 * parameters, then its client-local instance can be revived. If it is
+	 * dormant but can not be revived, then an <tt>EntityEndMessage</tt> is
+	 * sent so that the client discards the dormant instance before a new one
+	 * is created.
+	 * 
+	 * Internal use only.
+	 * 
+	 * @param entity
+	 *            the entity that becomes visible
+	 * @param constr
+	 *            the constructor that should create the client-local instance
+	 * @param key
+	 *            contains the parameters for <tt>constr</tt>
+	 * @return <tt>true</tt> if the dormant client-local instance should be
+	 *         revived, <tt>false</tt> if a new one must be created
+	 */
+	protected boolean revive(ServerEntityData entity, ConstructorData constr,
+			SearchKey key) {
+		DormantEntity d = dormant.remove(entity.getId());
+		if (d == null) {
+			return false;
+		}
+		d.ended = true;
+		boolean revive = d.constr == constr
+				&& Arrays.equals(d.params, key.getParameters());
+		if (!revive) {
+			send(new EntityEndMessage(entity));
+		}
+		entity.dormancyEnded(this);
+		return revive;
+	}
+
+	/**
+	 * Ends the dormancy of an entity right away because the entity was
+	 * destroyed. Does not notify <tt>entity</tt>.
+	 * 
+	 * Internal use only.
+	 * 
+	 * @param entity
+	 *            the destroyed entity
+	 */
+	protected void endDormancy(ServerEntityData entity) {
+		DormantEntity d = dormant.remove(entity.getId());
+		if (d == null) {
+			return;
+		}
+		d.ended = true;
+		send(new EntityEndMessage(entity));
+		checkDestroy();
+	}
+
+	/**
+	 * Ends every dormant entity whose grace period ended.
+	 */
+	private void expireDormant() {
+		if (dormantQueue.isEmpty()) {
+			return;
+		}
+		long now = System.nanoTime();
+		boolean expired = false;
+		while (!dormantQueue.isEmpty()
+				&& dormantQueue.getFirst().expires - now <= 0) {
+			DormantEntity d = dormantQueue.removeFirst();
+			if (d.ended) {
+				continue;
+			}
+			dormant.remove(d.entity.getId());
+			d.ended = true;
+			send(new EntityEndMessage(d.entity));
+			d.entity.dormancyEnded(this);
+			expired = true;
+		}
+		if (expired) {
+			checkDestroy();
+		}
+	}
+
+	@Override
+	public void update() {
+		super.update();
+		expireDormant();
+	}
+
+	/**
+	 * While the core module is batching, <tt>EntityInitMessages</tt> are held
+	 * back and sent as <tt>EntityInitBatchMessages</tt> when the batch ends.
+	 * Any other message will flush the held back messages first, so the order
+	 * in which messages arrive on the client is preserved.
+	 */
+	@Override
+	public void send(Message message) {
+		if (module.isBatching() && message instanceof EntityInitMessage) {
+			if (pendingInits.isEmpty()) {
+				module.batchCallback(this);
+			}
+			pendingInits.add((EntityInitMessage) message);
+			return;
+		}
+		flushPendingInits();
+		super.send(message);
+	}
+
+	/**
+	 * Sends all held back <tt>EntityInitMessages</tt>, packed into as few
+	 * <tt>EntityInitBatchMessages</tt> as possible. A single held back message
+	 * is sent as is.
+	 * 
+	 * Internal use only. Called by the core module when a batch ends.
+	 */
+	protected void flushPendingInits() {
+		if (pendingInits.isEmpty()) {
+			return;
+		}
+		if (pendingInits.size() == 1) {
+			super.send(pendingInits.get(0));
+		} else {
+			for (int i = 0; i < pendingInits.size(); i += MAX_BATCH_SIZE) {
+				super.send(new EntityInitBatchMessage(pendingInits.subList(i,
+						Math.min(pendingInits.size(), i + MAX_BATCH_SIZE))));
+			}
+		}
+		pendingInits.clear();
 	}
 
 	/**
@@ -111,18 +406,52 @@ public class ServerConnectionInfo extends ConnectionInfo<ServerSyncAppState>
 	 * connection invisible to it and turns this <tt>ServerConnectionInfo</tt>
 	 * into a dummy instance.
 	 * 
+	 * All mapping stacks are torn down in a single pass inside a batch of the
+	 * core module, so batched listeners receive a single notification. If the
+	 * connection is no longer running, no <tt>EntityEndMessages</tt> are
+	 * created at all.
+	 * 
 	 * After calling this method, this <tt>ServerConnectionInfo</tt> will no
 	 * longer be returned by the core module when calling <tt>getData</tt> with
 	 * the represented connection as parameter.
 	 */
 	public void destroy() {
 		assertNotOutdated();
-		while (!entities.isEmpty()) {
-			entities.values().iterator().next().destroy();
+		if (tearingDown) {
+			return;
+		}
+		tearingDown = true;
+		module.beginBatch();
+		try {
+			while (!entities.isEmpty()) {
+				MappingStack[] stacks = entities.values().toArray(
+						new MappingStack[entities.size()]);
+				entities.clear();
+				for (MappingStack s : stacks) {
+					s.teardown(running);
+				}
+			}
+			DormantEntity[] ds = dormant.values().toArray(
+					new DormantEntity[dormant.size()]);
+			dormant.clear();
+			dormantQueue.clear();
+			for (DormantEntity d : ds) {
+				if (running) {
+					send(new EntityEndMessage(d.entity));
+				}
+				d.entity.dormancyEnded(this);
+			}
+		} finally {
+			tearingDown = false;
+			module.endBatch();
 		}
 		appState.getEventManager().removeConnectionListener(this);
 		module.remove(connection);
 		registered = false;
+		if (slot >= 0) {
+			module.releaseSlot(slot);
+			slot = -1;
+		}
 	}
 
 	/**
@@ -154,7 +483,9 @@ public class ServerConnectionInfo extends ConnectionInfo<ServerSyncAppState>
 	protected void stackDestructionCallback(ServerEntityData entity,
 			@SuppressWarnings("unused") MappingStack s) {
 		entities.remove(entity.getId());
-		checkDestroy();
+		if (!tearingDown) {
+			checkDestroy();
+		}
 	}
 
 	/**
@@ -222,11 +553,11 @@ public class ServerConnectionInfo extends ConnectionInfo<ServerSyncAppState>
 	 */
 	@SuppressWarnings("deprecation")
 	private void checkDestroy() {
-		if (running && entities.isEmpty()) {
+		if (running && entities.isEmpty() && dormant.isEmpty()) {
 			running = false;
 		}
 		if (registered && getListenerConfiguration().isEmpty()
-				&& entities.isEmpty()) {
+				&& entities.isEmpty() && dormant.isEmpty()) {
 			destroy();
 		}
 	}
@@ -238,7 +569,63 @@ public class ServerConnectionInfo extends ConnectionInfo<ServerSyncAppState>
 		if (conn.equals(connection)) {
 			// prevent messages from being sent on destroy
 			running = false;
-			destroy();
+			module.connectionLost(this);
+		}
+	}
+
+	/**
+	 * An entity that became invisible to the represented connection, but
+	 * whose client-local instance is kept until its grace period ends.
+	 * 
+	 * @author Philipp Christian Loewner
+	 * 
+	 */
+	private static final class DormantEntity {
+
+		/**
+		 * The dormant entity.
+		 */
+		final ServerEntityData entity;
+
+		/**
+		 * The constructor that created the client-local instance.
+		 */
+		final ConstructorData constr;
+
+		/**
+		 * Parameters that were passed to <tt>constr</tt>.
+		 */
+		final Object[] params;
+
+		/**
+		 * Value of <tt>System.nanoTime</tt> at which the grace period ends.
+		 */
+		final long expires;
+
+		/**
+		 * <tt>true</tt> once the entity was revived or ended.
+		 */
+		boolean ended;
+
+		/**
+		 * Creates a new <tt>DormantEntity</tt>.
+		 * 
+		 * @param entity
+		 *            the dormant entity
+		 * @param constr
+		 *            the constructor that created the client-local instance
+		 * @param params
+		 *            parameters that were passed to <tt>constr</tt>
+		 * @param expires
+		 *            value of <tt>System.nanoTime</tt> at which the grace
+		 *            period ends
+		 */
+		DormantEntity(ServerEntityData entity, ConstructorData constr,
+				Object[] params, long expires) {
+			this.entity = entity;
+			this.constr = constr;
+			this.params = params;
+			this.expires = expires;
 		}
 	}
 
@@ -37,9 +37,16 @@
 
 package mirrormonkey.core.server;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import mirrormonkey.core.ConstructorNotFoundException;
+import mirrormonkey.core.member.SearchKey;
 import mirrormonkey.core.module.CoreModule;
 import mirrormonkey.framework.EntityProvider;
 import mirrormonkey.framework.ServerSyncAppState;
@@ -60,6 +67,18 @@ import com.jme3.network.MessageConnection;
 public class ServerCoreModule extends
 		CoreModule<ServerEntityData, ServerSyncAppState> {
 
+	/**
+	 * Number of upper bits of every entity ID that are used as generation
+	 * counter, so that a recycled entity ID is never equal to the ID of the
+	 * previous entity that used it.
+	 */
+	public static final int ENTITY_ID_GENERATION_BITS = 8;
+
+	/**
+	 * Initial length of the slot table.
+	 */
+	private static final int INITIAL_SLOT_CAPACITY = 16;
+
 	/**
 	 * Used to generate unique IDs for entities.
 	 */
@@ -71,6 +90,37 @@ public class ServerCoreModule extends
 	 */
 	private final Map<MessageConnection, ServerConnectionInfo> connectionData;
 
+	/**
+	 * Generates dense slot indices for connections, so that per-connection
+	 * state can be stored in bit sets and arrays.
+	 */
+	private final IdGenerator slotGenerator;
+
+	/**
+	 * Maps slot indices to the <tt>ServerConnectionInfo</tt> currently using
+	 * them.
+	 */
+	private ServerConnectionInfo[] slots;
+
+	/**
+	 * Contains every <tt>ServerConnectionInfo</tt> that held back
+	 * <tt>EntityInitMessages</tt> since the current batch began.
+	 */
+	private final Set<ServerConnectionInfo> batchedConnections;
+
+	/**
+	 * Contains every <tt>ServerConnectionInfo</tt> whose connection was closed
+	 * since the last update and that has not been destroyed yet.
+	 */
+	private final List<ServerConnectionInfo> lostConnections;
+
+	/**
+	 * Time in nanoseconds for which entities that became invisible to a
+	 * connection are kept dormant on the client, <tt>0</tt> if dormancy is
+	 * disabled.
+	 */
+	private long revivalGracePeriod;
+
 	/**
 	 * Creates a new <tt>ServerCoreModule</tt> that will be managed by a given
 	 * <tt>SyncAppState</tt>.
@@ -83,9 +133,195 @@ public class ServerCoreModule extends
 	 */
 	public ServerCoreModule(ServerSyncAppState appState) {
 		super(appState, false);
-		idGenerator = new IdGenerator();
+		idGenerator = new IdGenerator(IdGenerator.DEFAULT_FIRST_ID,
+				ENTITY_ID_GENERATION_BITS);
 		idGenerator.reserve(EntityProvider.NULL_ID);
 		connectionData = new HashMap<MessageConnection, ServerConnectionInfo>();
+		batchedConnections = new LinkedHashSet<ServerConnectionInfo>();
+		lostConnections = new ArrayList<ServerConnectionInfo>();
+		slotGenerator = new IdGenerator(0);
+		slots = new ServerConnectionInfo[INITIAL_SLOT_CAPACITY];
+	}
+
+	/**
+	 * Assigns the lowest free slot index to a connection.
+	 * 
+	 * Internal use only.
+	 * 
+	 * @param info
+	 *            the connection that needs a slot
+	 * @return the slot index assigned to <tt>info</tt>
+	 */
+	protected int assignSlot(ServerConnectionInfo info) {
+		int slot = slotGenerator.generateAndReserve();
+		if (slot >= slots.length) {
+			ServerConnectionInfo[] grown = new ServerConnectionInfo[Math.max(
+					slot + 1, slots.length * 2)];
+			System.arraycopy(slots, 0, grown, 0, slots.length);
+			slots = grown;
+		}
+		slots[slot] = info;
+		return slot;
+	}
+
+	/**
+	 * Frees a slot index when its connection is destroyed.
+	 * 
+	 * Internal use only.
+	 * 
+	 * @param slot
+	 *            the slot index that is no longer used
+	 */
+	protected void releaseSlot(int slot) {
+		slots[slot] = null;
+		slotGenerator.release(slot);
+	}
+
+	/**
+	 * @param slot
+	 *            a slot index
+	 * @return the <tt>ServerConnectionInfo</tt> using <tt>slot</tt> or
+	 *         <tt>null</tt> if the slot is free
+	 */
+	public ServerConnectionInfo getSlotData(int slot) {
+		return slot < slots.length ? slots[slot] : null;
+	}
+
+	/**
+	 * Hands an entity ID back to the ID generator when the entity is
+	 * unregistered.
+	 * 
+	 * Internal use only.
+	 * 
+	 * @param id
+	 *            the ID that is no longer in use
+	 */
+	protected void releaseId(int id) {
+		idGenerator.release(id);
+	}
+
+	/**
+	 * Generates and reserves a new entity ID for an entity that registers
+	 * again after its previous ID was released. The previous ID can not be
+	 * reserved again, as it may have been handed out to another entity in the
+	 * meantime.
+	 * 
+	 * Internal use only.
+	 * 
+	 * @return the new entity ID
+	 */
+	protected int generateId() {
+		return idGenerator.generateAndReserve();
+	}
+
+	/**
+	 * Sends all <tt>EntityInitMessages</tt> that were held back during the
+	 * batch that just ended as <tt>EntityInitBatchMessages</tt>.
+	 */
+	@Override
+	protected void batchEnded() {
+		for (ServerConnectionInfo i : batchedConnections) {
+			i.flushPendingInits();
+		}
+		batchedConnections.clear();
+	}
+
+	/**
+	 * Called by a <tt>ServerConnectionInfo</tt> when it holds back its first
+	 * <tt>EntityInitMessage</tt> during a batch.
+	 * 
+	 * Internal use only.
+	 * 
+	 * @param info
+	 *            the <tt>ServerConnectionInfo</tt> that must be flushed when
+	 *            the batch ends
+	 */
+	protected void batchCallback(ServerConnectionInfo info) {
+		batchedConnections.add(info);
+	}
+
+	/**
+	 * Makes every entity in <tt>entities</tt> visible to every connection in
+	 * <tt>connections</tt>, using the same client-local class and constructor
+	 * arguments for all of them.
+	 * 
+	 * The whole operation is performed inside a batch, so every connection will
+	 * receive its <tt>EntityInitMessages</tt> packed into as few messages as
+	 * possible. Constructor resolution is shared between calls that use the
+	 * same argument types.
+	 * 
+	 * If an exception is thrown, then the pairs processed before that remain
+	 * visible and their messages are still sent.
+	 * 
+	 * @param override
+	 *            see <tt>ServerEntityData.callConstr(boolean, Class,
+	 *            SearchKey)</tt>
+	 * @param entities
+	 *            the entities that should become visible
+	 * @param connections
+	 *            the connections to which the entities should become visible
+	 * @param connectedClass
+	 *            client-local entity class, or <tt>null</tt> to use the local
+	 *            class of each entity
+	 * @param template
+	 *            describes the constructor search and the arguments. The
+	 *            connection it was created with is ignored, a copy is created
+	 *            for every connection by calling <tt>withConnection</tt>.
+	 * @throws ConstructorNotFoundException
+	 *             if no constructor could be found for one of the pairs
+	 */
+	public void callConstr(boolean override,
+			Collection<? extends SyncEntity> entities,
+			Collection<? extends MessageConnection> connections,
+			Class<? extends SyncEntity> connectedClass, SearchKey template) {
+		beginBatch();
+		try {
+			for (MessageConnection c : connections) {
+				SearchKey key = template.withConnection(c);
+				for (SyncEntity e : entities) {
+					getData(e).callConstr(override,
+							connectedClass == null ? e.getClass()
+									: connectedClass, key);
+				}
+			}
+		} finally {
+			endBatch();
+		}
+	}
+
+	/**
+	 * Sets for how long entities that become invisible to a connection are
+	 * kept dormant. Instead of discarding the local instance, the client keeps
+	 * it detached and the server stops updating it. If the entity becomes
+	 * visible again in the same context before the grace period ends, then
+	 * only a small <tt>EntityReviveMessage</tt> is sent and the next updates
+	 * contain every synchronized field. Otherwise, the entity is ended as
+	 * usual when the grace period ends.
+	 * 
+	 * This avoids repeated initialization of entities that move back and forth
+	 * along the border of the interest area of a connection.
+	 * 
+	 * @param nanos
+	 *            the grace period in nanoseconds, <tt>0</tt> to disable
+	 *            dormancy
+	 * @throws IllegalArgumentException
+	 *             if <tt>nanos</tt> is negative
+	 */
+	public void setRevivalGracePeriod(long nanos) {
+		if (nanos < 0) {
+			throw new IllegalArgumentException("Negative grace period: "
+					+ nanos);
+		}
+		revivalGracePeriod = nanos;
+	}
+
+	/**
+	 * @return time in nanoseconds for which entities that became invisible to
+	 *         a connection are kept dormant, <tt>0</tt> if dormancy is
+	 *         disabled
+	 */
+	public long getRevivalGracePeriod() {
+		return revivalGracePeriod;
 	}
 
 	/**
@@ -107,7 +343,7 @@ public class ServerCoreModule extends
 		if (data != null) {
 			return data;
 		}
-		return new ServerEntityData(this, idGenerator.generateAndReserve(),
+		return new ServerEntityData(this, generateId(),
 				entity);
 	}
 
@@ -120,9 +356,49 @@ public class ServerCoreModule extends
 		return new ServerConnectionInfo(getAppState(), connection);
 	}
 
+	/**
+	 * Called when the connection of a <tt>ServerConnectionInfo</tt> was
+	 * closed. The instance will be destroyed on the next update, together with
+	 * every other connection that was closed in the meantime, so that a mass
+	 * disconnect is torn down in a single batch.
+	 * 
+	 * Internal use only.
+	 * 
+	 * @param info
+	 *            data about the closed connection
+	 */
+	protected void connectionLost(ServerConnectionInfo info) {
+		lostConnections.add(info);
+	}
+
+	/**
+	 * Destroys every <tt>ServerConnectionInfo</tt> whose connection was closed
+	 * since the last update inside a single batch.
+	 */
+	private void destroyLostConnections() {
+		if (lostConnections.isEmpty()) {
+			return;
+		}
+		beginBatch();
+		try {
+			for (ServerConnectionInfo i : lostConnections) {
+				if (i.isRegistered()
+						&& connectionData.get(i.getConnection()) == i) {
+					i.destroy();
+				}
+			}
+		} finally {
+			lostConnections.clear();
+			endBatch();
+		}
+	}
+
 	@Override
 	public void update(float tpf) {
-		for (ServerConnectionInfo i : connectionData.values()) {
+		destroyLostConnections();
+		// updating may end dormant entities and destroy connections
+		for (ServerConnectionInfo i : connectionData.values().toArray(
+				new ServerConnectionInfo[connectionData.size()])) {
 			i.update();
 		}
 		super.update(tpf);
@@ -141,7 +417,10 @@ public class ServerCoreModule extends
 	 *            removed
 	 */
 	protected void remove(MessageConnection connection) {
-		connectionData.remove(connection);
+		ServerConnectionInfo info = connectionData.remove(connection);
+		if (info != null) {
+			removeDispatchTables(info);
+		}
 	}
 
 	/**
@@ -37,10 +37,12 @@
 
 package mirrormonkey.core.server;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 import mirrormonkey.core.ConstructorNotFoundException;
@@ -105,8 +107,30 @@ public class ServerEntityData extends DynamicEntityData {
 	 * 
 	 * The <tt>Interpretation</tt> contains dynamic data for the connected class
 	 * and is shared across multiple connections / mapping stacks.
+	 * 
+	 * Entities are rarely visible under more than a few connected classes at
+	 * once, so this is a small array that is searched linearly instead of a
+	 * hash map. Only the first <tt>interpretationCount</tt> entries are used.
+	 */
+	private Interpretation[] interpretations;
+
+	/**
+	 * Number of used entries in <tt>interpretations</tt>.
+	 */
+	private int interpretationCount;
+
+	/**
+	 * <tt>true</tt> if the entity ID has been handed back to the core module
+	 * when this <tt>ServerEntityData</tt> was unregistered.
 	 */
-	private final Map<Class<?>, Interpretation> connectedClassToDynamicData;
+	private boolean idReleased;
+
+	/**
+	 * Contains every connection to which the represented entity is dormant.
+	 * The entity ID is kept reserved while this is not empty, so that the
+	 * entity can be revived.
+	 */
+	private final List<ServerConnectionInfo> dormantIn;
 
 	/**
 	 * Creates a new <tt>ServerEntityData</tt> with given core module, entity ID
@@ -125,7 +149,8 @@ public class ServerEntityData extends DynamicEntityData {
 		super(id, entity);
 		this.module = module;
 		connectionToStack = new HashMap<MessageConnection, MappingStack>();
-		connectedClassToDynamicData = new HashMap<Class<?>, Interpretation>();
+		interpretations = new Interpretation[2];
+		dormantIn = new ArrayList<ServerConnectionInfo>(1);
 	}
 
 	/*
@@ -352,6 +377,9 @@ public class ServerEntityData extends DynamicEntityData {
 			connectionToStack.values().iterator().next().destroy();
 		}
 		connectionToStack.clear();
+		while (!dormantIn.isEmpty()) {
+			dormantIn.remove(dormantIn.size() - 1).endDormancy(this);
+		}
 		listenerConfiguration.clear();
 		unregister();
 	}
@@ -402,12 +430,14 @@ public class ServerEntityData extends DynamicEntityData {
 	 */
 	protected Interpretation getInterpretation(StaticEntityData staticData,
 			boolean create) {
-		Interpretation i = connectedClassToDynamicData.get(staticData
-				.getConnectedClass());
-		if (i == null && create) {
-			i = new Interpretation(this, staticData);
+		Class<?> connectedClass = staticData.getConnectedClass();
+		for (int i = 0; i < interpretationCount; i++) {
+			Interpretation in = interpretations[i];
+			if (in.getStaticData().getConnectedClass() == connectedClass) {
+				return in;
+			}
 		}
-		return i;
+		return create ? new Interpretation(this, staticData) : null;
 	}
 
 	/*
@@ -456,6 +486,29 @@ public class ServerEntityData extends DynamicEntityData {
 		}
 	}
 
+	/**
+	 * Called by a <tt>ServerConnectionInfo</tt> when the represented entity
+	 * became dormant on its connection.
+	 * 
+	 * @param connection
+	 *            data about the connection
+	 */
+	protected void dormancyCreated(ServerConnectionInfo connection) {
+		dormantIn.add(connection);
+	}
+
+	/**
+	 * Called by a <tt>ServerConnectionInfo</tt> when the represented entity
+	 * was revived or ended on its connection after being dormant.
+	 * 
+	 * @param connection
+	 *            data about the connection
+	 */
+	protected void dormancyEnded(ServerConnectionInfo connection) {
+		dormantIn.remove(connection);
+		checkDestroy();
+	}
+
 	/**
 	 * Registers an interpretation that previously was a dummy instance to this
 	 * <tt>ServerEntityData</tt>.
@@ -465,8 +518,13 @@ public class ServerEntityData extends DynamicEntityData {
 	 *            been added
 	 */
 	protected void interpretationCreationCallback(Interpretation i) {
-		connectedClassToDynamicData.put(i.getStaticData().getConnectedClass(),
-				i);
+		interpretationDestructionCallback(i);
+		if (interpretationCount == interpretations.length) {
+			Interpretation[] grown = new Interpretation[interpretationCount * 2];
+			System.arraycopy(interpretations, 0, grown, 0, interpretationCount);
+			interpretations = grown;
+		}
+		interpretations[interpretationCount++] = i;
 	}
 
 	/**
@@ -478,8 +536,15 @@ public class ServerEntityData extends DynamicEntityData {
 	 *            removed
 	 */
 	protected void interpretationDestructionCallback(Interpretation i) {
-		connectedClassToDynamicData.remove(i.getStaticData()
-				.getConnectedClass());
+		Class<?> connectedClass = i.getStaticData().getConnectedClass();
+		for (int j = 0; j < interpretationCount; j++) {
+			Interpretation in = interpretations[j];
+			if (in.getStaticData().getConnectedClass() == connectedClass) {
+				interpretations[j] = interpretations[--interpretationCount];
+				interpretations[interpretationCount] = null;
+				return;
+			}
+		}
 	}
 
 	@Override
@@ -509,13 +574,19 @@ public class ServerEntityData extends DynamicEntityData {
 
 	/**
 	 * Turns this <tt>ServerEntityData</tt> from a dummy instance into a real
-	 * instance and registers it to the core module.
+	 * instance and registers it to the core module. If the entity ID was
+	 * released before, a new ID is assigned, because the old one may belong
+	 * to another entity by now.
 	 * 
 	 * Please note that despite its similar name, this method is <b>not</b>
 	 * called solely when the represented entity's state is changed to
 	 * registered. It also will not notify <tt>EntityRegistrationListeners</tt>
 	 */
 	private void register() {
+		if (idReleased) {
+			setId(module.generateId());
+			idReleased = false;
+		}
 		getLocalInstance().setData(this);
 		module.getEntityProvider().registerData(this);
 		setNotDummy(true);
@@ -523,7 +594,8 @@ public class ServerEntityData extends DynamicEntityData {
 
 	/**
 	 * Turns this <tt>ServerEntityData</tt> from a real instance into a dummy
-	 * instance and unregisters it from the core module.
+	 * instance, unregisters it from the core module and releases the entity
+	 * ID.
 	 * 
 	 * Please note that despite its similar name, this method is <b>not</b>
 	 * always (and not necessarily) called when the represented entity's state
@@ -534,6 +606,8 @@ public class ServerEntityData extends DynamicEntityData {
 		getLocalInstance().setData(null);
 		module.getEntityProvider().removeData(this);
 		setNotDummy(false);
+		module.releaseId(getId());
+		idReleased = true;
 	}
 
 	/**
@@ -558,11 +632,11 @@ public class ServerEntityData extends DynamicEntityData {
 	}
 
 	/**
-	 * @return <tt>true</tt> if the represented entity is visible to at least
-	 *         one client, <tt>false</tt> if it isn't.
+	 * @return <tt>true</tt> if the represented entity is visible or dormant to
+	 *         at least one client, <tt>false</tt> if it isn't.
 	 */
 	private boolean hasConnections() {
-		return !connectionToStack.isEmpty();
+		return !connectionToStack.isEmpty() || !dormantIn.isEmpty();
 	}
 
 	/*
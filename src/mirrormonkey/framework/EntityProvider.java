@@ -41,7 +41,7 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 import mirrormonkey.framework.annotations.AssetInjection;
@@ -56,6 +56,7 @@ import mirrormonkey.framework.parameter.CustomParameterIR;
 import mirrormonkey.framework.parameter.IdentityAwareInterpreter;
 import mirrormonkey.framework.parameter.NullInterpreter;
 import mirrormonkey.framework.parameter.ValueInterpreter;
+import mirrormonkey.util.IntMap;
 import mirrormonkey.util.annotations.parsing.AnnotationParser;
 import mirrormonkey.util.annotations.parsing.ConstructorKeyDynamic;
 import mirrormonkey.util.annotations.parsing.FieldKeyStatic;
@@ -102,16 +103,32 @@ public class EntityProvider<D extends DynamicEntityData> {
 	 * 
 	 * Once static data has been added to this map, it will never be removed
 	 * because re-parsing the classes is quite slow.
+	 * 
+	 * Keyed by local class first and connected class second, both by
+	 * identity, so lookups do not allocate keys.
+	 */
+	private final Map<Class<?>, Map<Class<?>, StaticEntityData>> staticData;
+
+	/**
+	 * Every <tt>StaticEntityData</tt> in <tt>staticData</tt>, indexed by its
+	 * handle.
+	 */
+	private StaticEntityData[] staticDataByHandle;
+
+	/**
+	 * Number of handles assigned so far.
 	 */
-	private final Map<StaticDataKey, StaticEntityData> staticData;
+	private int staticDataCount;
 
 	/**
 	 * Contains mutable data about specific entity instances.
 	 * 
 	 * In contrast to <tt>staticData</tt>, data will be dynamically registered
-	 * and unregistered from and to this map as needed.
+	 * and unregistered from and to this map as needed. Keyed by entity ID
+	 * without boxing, as this is looked up for every inbound message that
+	 * refers to an entity.
 	 */
-	private final Map<Integer, D> dynamicData;
+	private final IntMap<D> dynamicData;
 
 	/**
 	 * Used to parse class hierarchies and create data for <tt>staticData</tt>.
@@ -195,8 +212,9 @@ public class EntityProvider<D extends DynamicEntityData> {
 	public EntityProvider(AnnotationParser parser, SyncAppState<?> appState,
 			boolean collectLocalConstructors) {
 		this.appState = appState;
-		staticData = new HashMap<StaticDataKey, StaticEntityData>();
-		dynamicData = new HashMap<Integer, D>();
+		staticData = new IdentityHashMap<Class<?>, Map<Class<?>, StaticEntityData>>();
+		staticDataByHandle = new StaticEntityData[16];
+		dynamicData = new IntMap<D>();
 		this.parser = parser;
 		parser.addKeyClass(Constructor.class, ConstructorKeyDynamic.class);
 		parser.addKeyClass(Method.class, MethodKeyDynamic.class);
@@ -251,7 +269,23 @@ public class EntityProvider<D extends DynamicEntityData> {
 	public StaticEntityData getStaticData(
 			Class<? extends SyncEntity> localClass,
 			Class<? extends SyncEntity> connectedClass, boolean add) {
-		return getStaticData(new StaticDataKey(localClass, connectedClass), add);
+		Map<Class<?>, StaticEntityData> byConnected = staticData
+				.get(localClass);
+		StaticEntityData data = byConnected == null ? null : byConnected
+				.get(connectedClass);
+		if (data == null) {
+			StaticEntityDataIR ir = (StaticEntityDataIR) parser
+					.parseClass(localClass);
+			StaticEntityDataIR connectedIR = (StaticEntityDataIR) parser
+					.parseClass(connectedClass);
+			data = ir.extractData(appState, connectedIR, this,
+					collectLocalConstructors);
+			if (add) {
+				addStaticData(new StaticDataKey(localClass, connectedClass),
+						data);
+			}
+		}
+		return data;
 	}
 
 	/**
@@ -273,19 +307,32 @@ public class EntityProvider<D extends DynamicEntityData> {
 	 *         is present and <tt>add</tt> was set to <tt>false</tt>
 	 */
 	public StaticEntityData getStaticData(StaticDataKey key, boolean add) {
-		StaticEntityData data = staticData.get(key);
-		if (data == null) {
-			StaticEntityDataIR ir = (StaticEntityDataIR) parser
-					.parseClass(key.localClass);
-			StaticEntityDataIR connectedIR = (StaticEntityDataIR) parser
-					.parseClass(key.connectedClass);
-			data = ir.extractData(appState, connectedIR, this,
-					collectLocalConstructors);
-			if (add) {
-				addStaticData(key, data);
-			}
+		return getStaticData(key.localClass, key.connectedClass, add);
+	}
+
+	/**
+	 * Fetches a <tt>StaticEntityData</tt> by its handle.
+	 * 
+	 * @param handle
+	 *            the handle of the <tt>StaticEntityData</tt>
+	 * @return the <tt>StaticEntityData</tt> with handle <tt>handle</tt>
+	 * @throws IllegalArgumentException
+	 *             if no <tt>StaticEntityData</tt> has that handle
+	 */
+	public StaticEntityData getStaticData(int handle) {
+		if (handle < 0 || handle >= staticDataCount) {
+			throw new IllegalArgumentException("Unknown static data handle: "
+					+ handle);
 		}
-		return data;
+		return staticDataByHandle[handle];
+	}
+
+	/**
+	 * @return number of handles assigned so far; every handle is smaller than
+	 *         this
+	 */
+	public int getStaticDataCount() {
+		return staticDataCount;
 	}
 
 	/**
@@ -300,7 +347,23 @@ public class EntityProvider<D extends DynamicEntityData> {
 	 *            on top of their mapping stack
 	 */
 	public void addStaticData(StaticDataKey key, StaticEntityData data) {
-		staticData.put(key, data);
+		Map<Class<?>, StaticEntityData> byConnected = staticData
+				.get(key.localClass);
+		if (byConnected == null) {
+			byConnected = new IdentityHashMap<Class<?>, StaticEntityData>();
+			staticData.put(key.localClass, byConnected);
+		}
+		byConnected.put(key.connectedClass, data);
+		if (data.getHandle() < 0) {
+			if (staticDataCount == staticDataByHandle.length) {
+				StaticEntityData[] grown = new StaticEntityData[staticDataCount * 2];
+				System.arraycopy(staticDataByHandle, 0, grown, 0,
+						staticDataCount);
+				staticDataByHandle = grown;
+			}
+			data.setHandle(staticDataCount);
+			staticDataByHandle[staticDataCount++] = data;
+		}
 	}
 
 	/**
@@ -334,7 +397,7 @@ public class EntityProvider<D extends DynamicEntityData> {
 	 *            <tt>StaticEntityData</tt>.
 	 */
 	public void registerData(D data) {
-		dynamicData.put(Integer.valueOf(data.getId()), data);
+		dynamicData.put(data.getId(), data);
 	}
 
 	/**
@@ -349,7 +412,7 @@ public class EntityProvider<D extends DynamicEntityData> {
 	 *         <tt>null</tt> if no such data is found
 	 */
 	public D getData(int entityId) {
-		return dynamicData.get(Integer.valueOf(entityId));
+		return dynamicData.get(entityId);
 	}
 
 	/**
@@ -371,7 +434,7 @@ public class EntityProvider<D extends DynamicEntityData> {
 	 *            the ID of the entity to remove data of
 	 */
 	public void removeData(int entityId) {
-		dynamicData.remove(Integer.valueOf(entityId));
+		dynamicData.remove(entityId);
 	}
 
 	/**
@@ -109,6 +109,19 @@ public class ConnectionInfo<A extends SyncAppState<?>> {
 	 */
 	protected long estimatedArrivalTime;
 
+	/**
+	 * Smoothed variation of the measured message round trip times, in
+	 * nanoseconds, as estimated by <tt>sync</tt>.
+	 */
+	protected long estimatedJitter;
+
+	/**
+	 * Smoothed fraction of time sync requests that did not receive a response
+	 * in time, ranging from <tt>0</tt> to <tt>1</tt>, as estimated by
+	 * <tt>sync</tt>.
+	 */
+	protected float estimatedLoss;
+
 	/**
 	 * Calculates a more precise time per frame value than the <tt>float</tt>
 	 * available when updating. Used to update <tt>estimatedRemoteTime</tt>.
@@ -182,6 +195,15 @@ public class ConnectionInfo<A extends SyncAppState<?>> {
 		listenerConfiguration.getListeners(InstanceLifecycleListener.class, l);
 	}
 
+	/**
+	 * @return a number that changes whenever an
+	 *         <tt>InstanceLifecycleListener</tt> is added to or removed from
+	 *         this <tt>ConnectionInfo</tt>
+	 */
+	public int getListenerVersion() {
+		return listenerConfiguration.getVersion();
+	}
+
 	/**
 	 * @return the underlying connection
 	 */
@@ -217,6 +239,24 @@ public class ConnectionInfo<A extends SyncAppState<?>> {
 		return estimatedArrivalTime;
 	}
 
+	/**
+	 * @return Estimated variation between the round trip times of succeeding
+	 *         (unreliable) messages. Time is measured in nanoseconds.
+	 */
+	public long getEstimatedJitter() {
+		return estimatedJitter;
+	}
+
+	/**
+	 * @return Estimated fraction of (unreliable) messages that get lost on
+	 *         their way to the connected <tt>SyncAppState</tt> and back,
+	 *         ranging from <tt>0</tt> (no loss) to <tt>1</tt> (every message
+	 *         lost).
+	 */
+	public float getEstimatedLoss() {
+		return estimatedLoss;
+	}
+
 	/**
 	 * @return <tt>true</tt> if this <tt>ConnectionInfo</tt> is currently
 	 *         registered in the <tt>SyncAppState</tt>, false otherwise
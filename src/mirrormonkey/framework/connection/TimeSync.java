@@ -76,6 +76,18 @@ public class TimeSync {
 	 */
 	public static final long MIN_TIMEOUT = 500000000;
 
+	/**
+	 * Weight of a new sample when updating the estimated loss of the
+	 * connection.
+	 */
+	public static final float LOSS_SMOOTHING = 0.125f;
+
+	/**
+	 * Inverse weight of a new sample when updating the estimated jitter of the
+	 * connection.
+	 */
+	public static final long JITTER_SMOOTHING = 16;
+
 	/**
 	 * This <tt>TimeSync</tt> updates the remote time for this
 	 * <tt>ConnectionInfo</tt>.
@@ -118,6 +130,13 @@ public class TimeSync {
 	 */
 	protected boolean received;
 
+	/**
+	 * Round trip time measured for the last time sync request that received a
+	 * response, or <tt>0</tt> if none has been measured yet. Used to estimate
+	 * jitter.
+	 */
+	protected long lastTravelTime;
+
 	/**
 	 * Creates a new <tt>TimeSync</tt> that will try to synchronize time with a
 	 * <tt>SyncAppState</tt> connected via a given connection.
@@ -133,6 +152,7 @@ public class TimeSync {
 		timeoutTarget = System.nanoTime();
 		currentId = 0;
 		received = false;
+		lastTravelTime = 0;
 	}
 
 	/**
@@ -141,6 +161,11 @@ public class TimeSync {
 	 */
 	public void update() {
 		if (System.nanoTime() >= timeoutTarget) {
+			if (currentId != 0) {
+				float sample = received ? 0f : 1f;
+				connectionInfo.estimatedLoss += (sample - connectionInfo.estimatedLoss)
+						* LOSS_SMOOTHING;
+			}
 			currentId++;
 			connectionInfo.send(new TimeSyncRequestMessage(currentId));
 			sentLocalTime = System.nanoTime();
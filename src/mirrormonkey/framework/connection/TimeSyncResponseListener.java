@@ -88,6 +88,12 @@ public class TimeSyncResponseListener implements
 			ts.received = true;
 			long travelTime = System.nanoTime() - ts.sentLocalTime;
 			info.estimatedLatency = travelTime / 2;
+			if (ts.lastTravelTime != 0) {
+				info.estimatedJitter += (Math.abs(travelTime
+						- ts.lastTravelTime) - info.estimatedJitter)
+						/ TimeSync.JITTER_SMOOTHING;
+			}
+			ts.lastTravelTime = travelTime;
 			info.estimatedRemoteTime += (r.localTime - info.estimatedRemoteTime);
 			info.estimatedRemoteTime += info.estimatedLatency;
 			info.estimatedArrivalTime = info.estimatedRemoteTime
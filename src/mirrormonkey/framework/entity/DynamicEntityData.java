@@ -63,7 +63,7 @@ public abstract class DynamicEntityData {
 	/**
 	 * ID of the entity to identify it over the network.
 	 */
-	private final int id;
+	private int id;
 
 	/**
 	 * Contains <tt>InstanceLifecycleListeners</tt> that listen to this entity
@@ -142,6 +142,20 @@ public abstract class DynamicEntityData {
 		return id;
 	}
 
+	/**
+	 * Changes the ID of the entity represented by this
+	 * <tt>DynamicEntityData</tt>. This must only be done while it is not
+	 * registered in the <tt>EntityProvider</tt>.
+	 * 
+	 * Internal use only.
+	 * 
+	 * @param id
+	 *            the new ID of the entity
+	 */
+	protected void setId(int id) {
+		this.id = id;
+	}
+
 	/**
 	 * Returns <tt>true</tt> if, and only if, <tt>CoreModule.getData</tt> would
 	 * not return <tt>null</tt> for the entity represented by this
@@ -40,9 +40,11 @@ package mirrormonkey.framework.entity;
 import java.util.HashMap;
 import java.util.Map;
 
+import mirrormonkey.core.member.ConstructorIndex;
 import mirrormonkey.framework.member.DynamicMemberData;
 import mirrormonkey.framework.member.MemberDataKey;
 import mirrormonkey.framework.member.StaticMemberData;
+import mirrormonkey.framework.member.StatelessMemberData;
 
 /**
  * Responsible for keeping data that is common to all entities where the
@@ -92,6 +94,32 @@ public final class StaticEntityData {
 	 */
 	private final Map<MemberDataKey, StaticMemberData> membersByKey;
 
+	/**
+	 * Resolves constructor calls without probing every constructor with the
+	 * same number of parameters. Created on first use.
+	 */
+	private ConstructorIndex constructorIndex;
+
+	/**
+	 * Maps member IDs to indices in the arrays created by
+	 * <tt>createDynamicMemberData</tt>, <tt>-1</tt> for members that do not
+	 * store dynamic data.
+	 */
+	private final int[] dynamicSlots;
+
+	/**
+	 * Number of members that store dynamic data, which is the length of the
+	 * arrays created by <tt>createDynamicMemberData</tt>.
+	 */
+	private final int dynamicSlotCount;
+
+	/**
+	 * Dense index of this <tt>StaticEntityData</tt> among all instances known
+	 * to its <tt>EntityProvider</tt>, or <tt>-1</tt> if it has not been added
+	 * yet.
+	 */
+	private int handle;
+
 	/**
 	 * Creates a new <tt>StaticEntityData</tt>. Called by
 	 * <tt>StaticEntityDataIR</tt> to extract collected data.
@@ -120,6 +148,44 @@ public final class StaticEntityData {
 			membersByKey.put(data.getMemberKey(), data);
 		}
 		this.notifyClasses = notifyClasses;
+		handle = -1;
+		dynamicSlots = new int[members.length];
+		int slots = 0;
+		for (int i = 0; i < members.length; i++) {
+			dynamicSlots[i] = members[i] instanceof StatelessMemberData ? -1
+					: slots++;
+		}
+		dynamicSlotCount = slots;
+	}
+
+	/**
+	 * Returns a small, dense index that identifies this
+	 * <tt>StaticEntityData</tt> within its <tt>EntityProvider</tt>. Modules may
+	 * use it to keep side tables in arrays instead of hash maps.
+	 * 
+	 * @return the handle of this <tt>StaticEntityData</tt>, or <tt>-1</tt> if
+	 *         it has not been added to an <tt>EntityProvider</tt>
+	 */
+	public final int getHandle() {
+		return handle;
+	}
+
+	/**
+	 * Sets the handle of this <tt>StaticEntityData</tt>.
+	 * 
+	 * Internal use only.
+	 * 
+	 * @param handle
+	 *            the dense index assigned by the <tt>EntityProvider</tt>
+	 * @throws IllegalStateException
+	 *             if a handle has already been assigned
+	 */
+	public final void setHandle(int handle) {
+		if (this.handle >= 0) {
+			throw new IllegalStateException("Handle already assigned: "
+					+ this.handle);
+		}
+		this.handle = handle;
 	}
 
 	/**
@@ -129,24 +195,35 @@ public final class StaticEntityData {
 	 * 
 	 * @param entity
 	 *            the entity for which dynamic data should be created
-	 * @return an array of <tt>DynamicMemberData</tt> that contains an instance
-	 *         of <tt>DynamicMemberData</tt> on index <tt>i</tt> if the
-	 *         <tt>StaticMemberData</tt> with ID <tt>i</tt> requests that
-	 *         dynamic data be stored and <tt>null</tt> on all indices
-	 *         <tt>j</tt> where j are the IDs of the instances of
-	 *         <tt>StaticMemberData</tt> that do not request that dynamic data
-	 *         be stored
+	 * @return an array of <tt>DynamicMemberData</tt> that only has slots for
+	 *         members that store dynamic data; the dynamic data of the member
+	 *         with ID <tt>i</tt> is found at index <tt>getDynamicSlot(i)</tt>
 	 */
 	public final DynamicMemberData[] createDynamicMemberData(
 			DynamicEntityData entity) {
-		DynamicMemberData[] dynamicData = new DynamicMemberData[membersById.length];
-		int id = 0;
-		for (StaticMemberData i : membersById) {
-			dynamicData[id++] = i.createDynamicData(entity);
+		DynamicMemberData[] dynamicData = new DynamicMemberData[dynamicSlotCount];
+		for (int i = 0; i < membersById.length; i++) {
+			if (dynamicSlots[i] >= 0) {
+				dynamicData[dynamicSlots[i]] = membersById[i]
+						.createDynamicData(entity);
+			}
 		}
 		return dynamicData;
 	}
 
+	/**
+	 * Fetches the index at which the dynamic data of a member is stored in the
+	 * arrays created by <tt>createDynamicMemberData</tt>.
+	 * 
+	 * @param memberId
+	 *            ID of the member
+	 * @return index of the dynamic data of the member, or <tt>-1</tt> if the
+	 *         member does not store dynamic data
+	 */
+	public final int getDynamicSlot(int memberId) {
+		return dynamicSlots[memberId];
+	}
+
 	/**
 	 * @return immutable data on how to handle members of entities in this
 	 *         context
@@ -191,6 +268,17 @@ public final class StaticEntityData {
 		return (T) membersByKey.get(key);
 	}
 
+	/**
+	 * @return the <tt>ConstructorIndex</tt> that resolves constructor calls
+	 *         for this <tt>StaticEntityData</tt>
+	 */
+	public final ConstructorIndex getConstructorIndex() {
+		if (constructorIndex == null) {
+			constructorIndex = new ConstructorIndex(this);
+		}
+		return constructorIndex;
+	}
+
 	/**
 	 * @return the local entity class
 	 */
@@ -0,0 +1,730 @@
+/*
+ * Copyright (c) 2011, 2012, Philipp Christian Loewner
+ * All rights reserved.
+ * 
+ * Disclaimer:
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * This software uses parts of:
+ * jMonkeyEngine
+ * Copyright (c) 2009-2010 jMonkeyEngine
+ * All rights reserved.
+ * 
+ * For jMonkeyEngine, the same disclaimer as printed above applies.
+ */
+
+package mirrormonkey.interest.module;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import mirrormonkey.core.member.SearchExactKey;
+import mirrormonkey.core.member.SearchKey;
+import mirrormonkey.core.server.ServerCoreModule;
+import mirrormonkey.framework.ServerSyncAppState;
+import mirrormonkey.framework.entity.SyncEntity;
+import mirrormonkey.framework.module.MirrorMonkeyModule;
+import mirrormonkey.interest.Located;
+
+import com.jme3.math.Vector3f;
+import com.jme3.network.ConnectionListener;
+import com.jme3.network.HostedConnection;
+import com.jme3.network.MessageConnection;
+import com.jme3.network.Server;
+
+/**
+ * Optional server-side module that makes entities visible and invisible to
+ * connections automatically, depending on their positions in the world.
+ * 
+ * Every tracked entity and every viewer (the point of view of a connection) is
+ * sorted into a uniform grid of cubic cells. An entity becomes visible to a
+ * connection when its cell is at most <tt>enterRange</tt> cells away from the
+ * cell of the viewer (in every axis) and becomes invisible again once it is
+ * more than <tt>leaveRange</tt> cells away. Choosing <tt>leaveRange</tt>
+ * greater than <tt>enterRange</tt> prevents entities from flickering in and
+ * out of visibility at the border.
+ * 
+ * The grid is updated incrementally: when an entity changes its cell, only
+ * the viewers it is visible to and the viewers in the cells within
+ * <tt>enterRange</tt> of its new cell are checked. The cells surrounding a
+ * viewer are only scanned when the viewer changes its cell. All visibility changes of one update are sent
+ * in a single batch of the core module.
+ * 
+ * Entities tracked by this module should not be made visible or invisible
+ * manually with the same client-local class.
+ * 
+ * @author Philipp Christian Loewner
+ * 
+ */
+public class InterestModule extends MirrorMonkeyModule<ServerSyncAppState>
+		implements ConnectionListener {
+
+	/**
+	 * Default edge length of a grid cell.
+	 */
+	public static final float DEFAULT_CELL_SIZE = 64f;
+
+	/**
+	 * Default number of cells an entity may be away from a viewer to become
+	 * visible to it.
+	 */
+	public static final int DEFAULT_ENTER_RANGE = 2;
+
+	/**
+	 * Default number of cells an entity may be away from a viewer before it
+	 * becomes invisible to it.
+	 */
+	public static final int DEFAULT_LEAVE_RANGE = 3;
+
+	/**
+	 * Number of bits used for every axis when packing cell coordinates into a
+	 * single key.
+	 */
+	private static final int AXIS_BITS = 21;
+
+	/**
+	 * Mask for a single axis in a packed cell key.
+	 */
+	private static final long AXIS_MASK = (1L << AXIS_BITS) - 1;
+
+	/**
+	 * Used to make entities visible and invisible.
+	 */
+	private final ServerCoreModule coreModule;
+
+	/**
+	 * Maps packed cell coordinates to the entities currently in that cell.
+	 * Empty cells are removed.
+	 */
+	private final Map<Long, Set<TrackedEntity>> cells;
+
+	/**
+	 * Maps packed cell coordinates to the viewers currently in that cell.
+	 * Empty cells are removed.
+	 */
+	private final Map<Long, Set<Viewer>> viewerCells;
+
+	/**
+	 * Contains every entity tracked by this module.
+	 */
+	private final Map<SyncEntity, TrackedEntity> entities;
+
+	/**
+	 * Contains the viewer of every connection tracked by this module.
+	 */
+	private final Map<MessageConnection, Viewer> viewers;
+
+	/**
+	 * Edge length of a grid cell.
+	 */
+	private float cellSize;
+
+	/**
+	 * Maximum distance in cells at which entities become visible.
+	 */
+	private int enterRange;
+
+	/**
+	 * Maximum distance in cells at which entities stay visible.
+	 */
+	private int leaveRange;
+
+	/**
+	 * Creates a new <tt>InterestModule</tt> for a given
+	 * <tt>ServerSyncAppState</tt>. This constructor is called by
+	 * <tt>SyncAppState.getModule</tt> and should not be called from userspace
+	 * directly.
+	 * 
+	 * @param appState
+	 *            the <tt>ServerSyncAppState</tt> creating this
+	 *            <tt>InterestModule</tt>
+	 */
+	public InterestModule(ServerSyncAppState appState) {
+		super(appState);
+		coreModule = appState.getModule(ServerCoreModule.class);
+		cells = new HashMap<Long, Set<TrackedEntity>>();
+		viewerCells = new HashMap<Long, Set<Viewer>>();
+		entities = new IdentityHashMap<SyncEntity, TrackedEntity>();
+		viewers = new HashMap<MessageConnection, Viewer>();
+		cellSize = DEFAULT_CELL_SIZE;
+		enterRange = DEFAULT_ENTER_RANGE;
+		leaveRange = DEFAULT_LEAVE_RANGE;
+		appState.getEventManager().addConnectionListener(this);
+	}
+
+	/**
+	 * Changes the layout of the grid. This is only possible while no entities
+	 * and viewers are tracked.
+	 * 
+	 * @param cellSize
+	 *            edge length of a grid cell
+	 * @param enterRange
+	 *            maximum distance in cells at which entities become visible
+	 * @param leaveRange
+	 *            maximum distance in cells at which entities stay visible,
+	 *            must not be smaller than <tt>enterRange</tt>
+	 * @throws IllegalStateException
+	 *             if entities or viewers are tracked
+	 * @throws IllegalArgumentException
+	 *             if the parameters do not describe a valid grid
+	 */
+	public void setGrid(float cellSize, int enterRange, int leaveRange) {
+		if (!entities.isEmpty() || !viewers.isEmpty()) {
+			throw new IllegalStateException(
+					"Grid can only be changed while nothing is tracked.");
+		}
+		if (cellSize <= 0 || enterRange < 0 || leaveRange < enterRange) {
+			throw new IllegalArgumentException("Invalid grid: cellSize="
+					+ cellSize + ", enterRange=" + enterRange
+					+ ", leaveRange=" + leaveRange);
+		}
+		this.cellSize = cellSize;
+		this.enterRange = enterRange;
+		this.leaveRange = leaveRange;
+	}
+
+	/**
+	 * @return edge length of a grid cell
+	 */
+	public float getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 * @return maximum distance in cells at which entities become visible
+	 */
+	public int getEnterRange() {
+		return enterRange;
+	}
+
+	/**
+	 * @return maximum distance in cells at which entities stay visible
+	 */
+	public int getLeaveRange() {
+		return leaveRange;
+	}
+
+	/**
+	 * Starts tracking an entity. It will be made visible using its own class
+	 * as client-local class and the constructor exactly matching
+	 * <tt>params</tt>.
+	 * 
+	 * @param entity
+	 *            the entity to track
+	 * @param location
+	 *            provides the position of <tt>entity</tt>
+	 * @param params
+	 *            arguments for the client-side constructor
+	 */
+	public void addEntity(SyncEntity entity, Located location,
+			Object... params) {
+		addEntity(entity, location, false, entity.getClass(),
+				new SearchExactKey(null, params));
+	}
+
+	/**
+	 * Starts tracking an entity. Whenever it becomes visible to a connection,
+	 * <tt>ServerEntityData.callConstr</tt> is called with the given
+	 * parameters. Whenever it becomes invisible, the reference for
+	 * <tt>connectedClass</tt> is removed again.
+	 * 
+	 * @param entity
+	 *            the entity to track
+	 * @param location
+	 *            provides the position of <tt>entity</tt>
+	 * @param override
+	 *            see <tt>ServerEntityData.callConstr(boolean, Class,
+	 *            SearchKey)</tt>
+	 * @param connectedClass
+	 *            client-local class of <tt>entity</tt>
+	 * @param template
+	 *            describes the constructor search and the arguments, will be
+	 *            copied for every connection using <tt>withConnection</tt>
+	 * @throws IllegalStateException
+	 *             if <tt>entity</tt> is already tracked
+	 */
+	public void addEntity(SyncEntity entity, Located location,
+			boolean override, Class<? extends SyncEntity> connectedClass,
+			SearchKey template) {
+		if (entities.containsKey(entity)) {
+			throw new IllegalStateException("Entity already tracked: "
+					+ entity);
+		}
+		TrackedEntity e = new TrackedEntity(entity, location, override,
+				connectedClass, template);
+		entities.put(entity, e);
+		coreModule.beginBatch();
+		try {
+			updateEntity(e);
+		} finally {
+			coreModule.endBatch();
+		}
+	}
+
+	/**
+	 * Stops tracking an entity and makes it invisible to every connection it
+	 * was made visible to by this module.
+	 * 
+	 * @param entity
+	 *            the entity that should no longer be tracked
+	 */
+	public void removeEntity(SyncEntity entity) {
+		TrackedEntity e = entities.remove(entity);
+		if (e == null) {
+			return;
+		}
+		if (e.placed) {
+			removeFromCell(e);
+		}
+		coreModule.beginBatch();
+		try {
+			for (Viewer v : new ArrayList<Viewer>(e.visibleTo)) {
+				hide(e, v);
+			}
+		} finally {
+			coreModule.endBatch();
+		}
+	}
+
+	/**
+	 * Sets the point of view of a connection. If the connection is not tracked
+	 * yet, it will be from now on.
+	 * 
+	 * @param connection
+	 *            the connection for which entities should be made visible
+	 * @param location
+	 *            provides the point of view of <tt>connection</tt>
+	 */
+	public void setViewer(MessageConnection connection, Located location) {
+		Viewer v = viewers.get(connection);
+		if (v == null) {
+			v = new Viewer(connection);
+			viewers.put(connection, v);
+		}
+		v.location = location;
+		coreModule.beginBatch();
+		try {
+			updateViewer(v);
+		} finally {
+			coreModule.endBatch();
+		}
+	}
+
+	/**
+	 * Stops tracking a connection and makes every entity that was made visible
+	 * to it by this module invisible again.
+	 * 
+	 * @param connection
+	 *            the connection that should no longer be tracked
+	 */
+	public void removeViewer(MessageConnection connection) {
+		Viewer v = viewers.remove(connection);
+		if (v == null) {
+			return;
+		}
+		if (v.placed) {
+			removeFromCell(v);
+		}
+		coreModule.beginBatch();
+		try {
+			for (TrackedEntity e : new ArrayList<TrackedEntity>(v.visible)) {
+				hide(e, v);
+			}
+		} finally {
+			coreModule.endBatch();
+		}
+	}
+
+	@Override
+	public void update(float tpf) {
+		coreModule.beginBatch();
+		try {
+			for (TrackedEntity e : entities.values()) {
+				updateEntity(e);
+			}
+			for (Viewer v : viewers.values()) {
+				updateViewer(v);
+			}
+		} finally {
+			coreModule.endBatch();
+		}
+	}
+
+	/**
+	 * Moves an entity to its current cell. If the cell changed, then the
+	 * entity is checked against <tt>leaveRange</tt> for every viewer it is
+	 * visible to and the cells within <tt>enterRange</tt> are scanned for
+	 * viewers it becomes visible to.
+	 * 
+	 * @param e
+	 *            the entity to update
+	 */
+	private void updateEntity(TrackedEntity e) {
+		Vector3f l = e.location.getLocation();
+		if (l == null) {
+			return;
+		}
+		int x = toCell(l.x), y = toCell(l.y), z = toCell(l.z);
+		if (e.placed && e.x == x && e.y == y && e.z == z) {
+			return;
+		}
+		if (e.placed) {
+			removeFromCell(e);
+		}
+		e.x = x;
+		e.y = y;
+		e.z = z;
+		e.placed = true;
+		Long key = Long.valueOf(pack(x, y, z));
+		Set<TrackedEntity> cell = cells.get(key);
+		if (cell == null) {
+			cell = new HashSet<TrackedEntity>();
+			cells.put(key, cell);
+		}
+		cell.add(e);
+		for (Viewer v : new ArrayList<Viewer>(e.visibleTo)) {
+			if (distance(e, v) > leaveRange) {
+				hide(e, v);
+			}
+		}
+		for (int i = x - enterRange; i <= x + enterRange; i++) {
+			for (int j = y - enterRange; j <= y + enterRange; j++) {
+				for (int k = z - enterRange; k <= z + enterRange; k++) {
+					Set<Viewer> vc = viewerCells.get(Long.valueOf(pack(i, j,
+							k)));
+					if (vc == null) {
+						continue;
+					}
+					for (Viewer v : vc) {
+						if (!e.visibleTo.contains(v)) {
+							show(e, v);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Moves a viewer to its current cell. If the cell changed, then every
+	 * visible entity is checked against <tt>leaveRange</tt> and the cells
+	 * within <tt>enterRange</tt> are scanned for entities that become
+	 * visible.
+	 * 
+	 * @param v
+	 *            the viewer to update
+	 */
+	private void updateViewer(Viewer v) {
+		Vector3f l = v.location.getLocation();
+		if (l == null) {
+			return;
+		}
+		int x = toCell(l.x), y = toCell(l.y), z = toCell(l.z);
+		if (v.placed && v.x == x && v.y == y && v.z == z) {
+			return;
+		}
+		if (v.placed) {
+			removeFromCell(v);
+		}
+		v.x = x;
+		v.y = y;
+		v.z = z;
+		v.placed = true;
+		Long key = Long.valueOf(pack(x, y, z));
+		Set<Viewer> vc = viewerCells.get(key);
+		if (vc == null) {
+			vc = new HashSet<Viewer>();
+			viewerCells.put(key, vc);
+		}
+		vc.add(v);
+		for (TrackedEntity e : new ArrayList<TrackedEntity>(v.visible)) {
+			if (distance(e, v) > leaveRange) {
+				hide(e, v);
+			}
+		}
+		for (int i = x - enterRange; i <= x + enterRange; i++) {
+			for (int j = y - enterRange; j <= y + enterRange; j++) {
+				for (int k = z - enterRange; k <= z + enterRange; k++) {
+					Set<TrackedEntity> cell = cells.get(Long.valueOf(pack(i,
+							j, k)));
+					if (cell == null) {
+						continue;
+					}
+					for (TrackedEntity e : cell) {
+						if (!e.visibleTo.contains(v)) {
+							show(e, v);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Makes an entity visible to the connection of a viewer.
+	 * 
+	 * @param e
+	 *            the entity
+	 * @param v
+	 *            the viewer
+	 */
+	private void show(TrackedEntity e, Viewer v) {
+		coreModule.getData(e.entity).callConstr(e.override, e.connectedClass,
+				e.template.withConnection(v.connection));
+		e.visibleTo.add(v);
+		v.visible.add(e);
+	}
+
+	/**
+	 * Makes an entity invisible to the connection of a viewer.
+	 * 
+	 * @param e
+	 *            the entity
+	 * @param v
+	 *            the viewer
+	 */
+	private void hide(TrackedEntity e, Viewer v) {
+		e.visibleTo.remove(v);
+		v.visible.remove(e);
+		coreModule.getData(e.entity).remove(v.connection, e.connectedClass);
+	}
+
+	/**
+	 * Removes an entity from the cell it is currently sorted into.
+	 * 
+	 * @param e
+	 *            the entity to remove
+	 */
+	private void removeFromCell(TrackedEntity e) {
+		Long key = Long.valueOf(pack(e.x, e.y, e.z));
+		Set<TrackedEntity> cell = cells.get(key);
+		cell.remove(e);
+		if (cell.isEmpty()) {
+			cells.remove(key);
+		}
+	}
+
+	/**
+	 * Removes a viewer from the cell it is currently sorted into.
+	 * 
+	 * @param v
+	 *            the viewer to remove
+	 */
+	private void removeFromCell(Viewer v) {
+		Long key = Long.valueOf(pack(v.x, v.y, v.z));
+		Set<Viewer> vc = viewerCells.get(key);
+		vc.remove(v);
+		if (vc.isEmpty()) {
+			viewerCells.remove(key);
+		}
+	}
+
+	/**
+	 * @param coordinate
+	 *            a world coordinate on any axis
+	 * @return the cell coordinate on the same axis
+	 */
+	private int toCell(float coordinate) {
+		return (int) Math.floor(coordinate / cellSize);
+	}
+
+	/**
+	 * @param e
+	 *            an entity that is sorted into a cell
+	 * @param v
+	 *            a viewer that is sorted into a cell
+	 * @return the distance between both cells in the axis in which they are
+	 *         furthest apart
+	 */
+	private static int distance(TrackedEntity e, Viewer v) {
+		return Math.max(Math.abs(e.x - v.x),
+				Math.max(Math.abs(e.y - v.y), Math.abs(e.z - v.z)));
+	}
+
+	/**
+	 * Packs cell coordinates into a single key. Coordinates wrap around after
+	 * 2^21 cells in each axis.
+	 * 
+	 * @param x
+	 *            cell coordinate on the x axis
+	 * @param y
+	 *            cell coordinate on the y axis
+	 * @param z
+	 *            cell coordinate on the z axis
+	 * @return the packed key
+	 */
+	private static long pack(int x, int y, int z) {
+		return ((x & AXIS_MASK) << (2 * AXIS_BITS))
+				| ((y & AXIS_MASK) << AXIS_BITS) | (z & AXIS_MASK);
+	}
+
+	public void connectionAdded(Server server, HostedConnection conn) {
+	}
+
+	/**
+	 * Forgets the viewer of a connection that was closed. The core module
+	 * takes care of the entities that were visible to it, so no messages are
+	 * sent.
+	 */
+	public void connectionRemoved(Server server, HostedConnection conn) {
+		Viewer v = viewers.remove(conn);
+		if (v == null) {
+			return;
+		}
+		if (v.placed) {
+			removeFromCell(v);
+		}
+		for (TrackedEntity e : v.visible) {
+			e.visibleTo.remove(v);
+		}
+		v.visible.clear();
+	}
+
+	/**
+	 * Contains everything this module knows about a tracked entity.
+	 * 
+	 * @author Philipp Christian Loewner
+	 * 
+	 */
+	private static final class TrackedEntity {
+
+		/**
+		 * The tracked entity.
+		 */
+		final SyncEntity entity;
+
+		/**
+		 * Provides the position of <tt>entity</tt>.
+		 */
+		final Located location;
+
+		/**
+		 * Passed to <tt>callConstr</tt> when making <tt>entity</tt> visible.
+		 */
+		final boolean override;
+
+		/**
+		 * Client-local class of <tt>entity</tt>.
+		 */
+		final Class<? extends SyncEntity> connectedClass;
+
+		/**
+		 * Copied for every connection when making <tt>entity</tt> visible.
+		 */
+		final SearchKey template;
+
+		/**
+		 * Contains every viewer to which <tt>entity</tt> was made visible.
+		 */
+		final Set<Viewer> visibleTo;
+
+		/**
+		 * <tt>true</tt> once the entity was sorted into a cell.
+		 */
+		boolean placed;
+
+		/**
+		 * Coordinates of the current cell.
+		 */
+		int x, y, z;
+
+		/**
+		 * Creates a new <tt>TrackedEntity</tt> that has not been sorted into a
+		 * cell yet.
+		 * 
+		 * @param entity
+		 *            the tracked entity
+		 * @param location
+		 *            provides the position of <tt>entity</tt>
+		 * @param override
+		 *            passed to <tt>callConstr</tt>
+		 * @param connectedClass
+		 *            client-local class of <tt>entity</tt>
+		 * @param template
+		 *            copied for every connection
+		 */
+		TrackedEntity(SyncEntity entity, Located location, boolean override,
+				Class<? extends SyncEntity> connectedClass, SearchKey template) {
+			this.entity = entity;
+			this.location = location;
+			this.override = override;
+			this.connectedClass = connectedClass;
+			this.template = template;
+			visibleTo = new HashSet<Viewer>();
+		}
+	}
+
+	/**
+	 * Contains everything this module knows about the point of view of a
+	 * connection.
+	 * 
+	 * @author Philipp Christian Loewner
+	 * 
+	 */
+	private static final class Viewer {
+
+		/**
+		 * The represented connection.
+		 */
+		final MessageConnection connection;
+
+		/**
+		 * Contains every entity that was made visible to <tt>connection</tt>.
+		 */
+		final Set<TrackedEntity> visible;
+
+		/**
+		 * Provides the point of view of <tt>connection</tt>.
+		 */
+		Located location;
+
+		/**
+		 * <tt>true</tt> once the viewer was sorted into a cell.
+		 */
+		boolean placed;
+
+		/**
+		 * Coordinates of the current cell.
+		 */
+		int x, y, z;
+
+		/**
+		 * Creates a new <tt>Viewer</tt> that has not been sorted into a cell
+		 * yet.
+		 * 
+		 * @param connection
+		 *            the represented connection
+		 */
+		Viewer(MessageConnection connection) {
+			this.connection = connection;
+			visible = new HashSet<TrackedEntity>();
+		}
+	}
+
+}
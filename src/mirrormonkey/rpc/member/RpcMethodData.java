@@ -40,12 +40,14 @@ package mirrormonkey.rpc.member;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
+import mirrormonkey.core.module.CoreModule;
 import mirrormonkey.framework.SyncAppState;
 import mirrormonkey.framework.entity.DynamicEntityData;
 import mirrormonkey.framework.entity.StaticEntityData;
 import mirrormonkey.framework.member.DynamicMemberData;
 import mirrormonkey.framework.member.MemberDataKey;
-import mirrormonkey.framework.member.StaticMemberData;
+import mirrormonkey.framework.member.StatelessMemberData;
+import mirrormonkey.framework.parameter.IdentityAwareInterpreter;
 import mirrormonkey.framework.parameter.ValueInterpreter;
 import mirrormonkey.framework.parameter.ValueUtil;
 import mirrormonkey.rpc.annotations.RpcTarget;
@@ -56,6 +58,7 @@ import mirrormonkey.rpc.module.CallRegistry;
 
 import com.jme3.network.Message;
 import com.jme3.network.MessageConnection;
+import com.jme3.network.MessageListener;
 
 /**
  * Contains immutable data about a method that can be called via RPC.
@@ -63,7 +66,7 @@ import com.jme3.network.MessageConnection;
  * @author Philipp Christian Loewner
  * 
  */
-public class RpcMethodData implements StaticMemberData {
+public class RpcMethodData implements StatelessMemberData {
 
 	/**
 	 * Error message that will be returned to the caller if the caller-local
@@ -257,6 +260,76 @@ public class RpcMethodData implements StaticMemberData {
 		}
 	}
 
+	/**
+	 * Holds back an inbound invocation request if one of its parameters refers
+	 * to an entity that has been announced but not yet instantiated locally.
+	 * 
+	 * @param coreModule
+	 *            the local core module
+	 * @param listener
+	 *            the listener that is currently handling <tt>message</tt>
+	 * @param message
+	 *            the invocation request
+	 * @return <tt>true</tt> if <tt>message</tt> was held back and must not be
+	 *         handled now, <tt>false</tt> otherwise
+	 */
+	public boolean deferIfPending(CoreModule<?, ?> coreModule,
+			MessageListener<MessageConnection> listener, RpcCallMessage message) {
+		for (int i = 0; i < paramAccessors.length; i++) {
+			if (deferIfPending(coreModule, listener, message,
+					paramAccessors[i], message.parameters[i])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Holds back an inbound result if it refers to an entity that has been
+	 * announced but not yet instantiated locally.
+	 * 
+	 * @param coreModule
+	 *            the local core module
+	 * @param listener
+	 *            the listener that is currently handling <tt>message</tt>
+	 * @param message
+	 *            the result message
+	 * @return <tt>true</tt> if <tt>message</tt> was held back and must not be
+	 *         handled now, <tt>false</tt> otherwise
+	 */
+	public boolean deferIfPending(CoreModule<?, ?> coreModule,
+			MessageListener<MessageConnection> listener,
+			RpcResultMessage message) {
+		return deferIfPending(coreModule, listener, message, resultAccessor,
+				message.result);
+	}
+
+	/**
+	 * Holds back a message if a single packed value refers to an entity that
+	 * has been announced but not yet instantiated locally.
+	 * 
+	 * @param coreModule
+	 *            the local core module
+	 * @param listener
+	 *            the listener that is currently handling <tt>message</tt>
+	 * @param message
+	 *            the message containing <tt>value</tt>
+	 * @param interpreter
+	 *            interpreter used to extract <tt>value</tt>
+	 * @param value
+	 *            the packed value
+	 * @return <tt>true</tt> if <tt>message</tt> was held back, <tt>false</tt>
+	 *         otherwise
+	 */
+	private static boolean deferIfPending(CoreModule<?, ?> coreModule,
+			MessageListener<MessageConnection> listener, Message message,
+			ValueInterpreter interpreter, Object value) {
+		return interpreter instanceof IdentityAwareInterpreter
+				&& value instanceof Integer
+				&& coreModule.deferIfPending(((Integer) value).intValue(),
+						listener, message);
+	}
+
 	@Override
 	public String toString() {
 		String s = "[" + getClass().getName() + "@"
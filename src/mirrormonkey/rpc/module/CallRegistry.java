@@ -57,6 +57,13 @@ public class CallRegistry {
 	 */
 	public static final int NO_RESPONSE_EXPECTED = -1;
 
+	/**
+	 * Number of upper bits of every call ID that are used as generation
+	 * counter, so that a late response to a call that timed out is never
+	 * mistaken for the response to a newer call with a recycled ID.
+	 */
+	public static final int CALL_ID_GENERATION_BITS = 8;
+
 	/**
 	 * Generates unique IDs for invocation requests that expect a response.
 	 */
@@ -78,7 +85,8 @@ public class CallRegistry {
 	 * Creates a new <tt>CallRegistry</tt>.
 	 */
 	public CallRegistry() {
-		idGen = new IdGenerator();
+		idGen = new IdGenerator(IdGenerator.DEFAULT_FIRST_ID,
+				CALL_ID_GENERATION_BITS);
 		idGen.reserve(NO_RESPONSE_EXPECTED);
 		currentCalls = new LinkedHashMap<Integer, RegisteredCall>();
 		currentIteration = new LinkedList<RegisteredCall>();
@@ -135,7 +143,9 @@ public class CallRegistry {
 	 *            the <tt>RegisteredCall</tt> to remove
 	 */
 	protected void removeCall(RegisteredCall registeredCall) {
-		currentCalls.remove(registeredCall.id);
+		if (currentCalls.remove(registeredCall.id) != null) {
+			idGen.release(registeredCall.id);
+		}
 	}
 
 	/**
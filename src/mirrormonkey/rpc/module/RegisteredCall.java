@@ -198,6 +198,13 @@ public class RegisteredCall {
 		}
 	}
 
+	/**
+	 * @return data about the method that was invoked
+	 */
+	public RpcMethodData getMethodData() {
+		return methodData;
+	}
+
 	/**
 	 * @return connection that the invocation request was sent to
 	 */
@@ -37,10 +37,13 @@
 
 package mirrormonkey.rpc.module;
 
+import java.util.logging.Logger;
+
 import mirrormonkey.core.module.CoreModule;
 import mirrormonkey.framework.EntityProvider;
 import mirrormonkey.framework.SyncAppState;
 import mirrormonkey.framework.entity.DynamicEntityData;
+import mirrormonkey.framework.entity.StaticEntityData;
 import mirrormonkey.rpc.member.RpcMethodData;
 import mirrormonkey.rpc.messages.RpcCallMessage;
 
@@ -58,6 +61,11 @@ import com.jme3.network.MessageListener;
  */
 public class RpcCallListener implements MessageListener<MessageConnection> {
 
+	/**
+	 * Warning messages go here.
+	 */
+	private static final Logger LOGGER = Logger.getLogger("RpcCallListener");
+
 	/**
 	 * Local <tt>SyncAppState</tt> responsible for managing synchronization.
 	 */
@@ -69,6 +77,11 @@ public class RpcCallListener implements MessageListener<MessageConnection> {
 	 */
 	private final EntityProvider<?> entityProvider;
 
+	/**
+	 * Holds back requests for entities that have not been instantiated yet.
+	 */
+	private final CoreModule<?, ?> coreModule;
+
 	/**
 	 * Creates a new <tt>RpcCallListener</tt> that will invoke incoming
 	 * requests.
@@ -78,17 +91,31 @@ public class RpcCallListener implements MessageListener<MessageConnection> {
 	 */
 	public RpcCallListener(SyncAppState<?> appState) {
 		this.appState = appState;
-		this.entityProvider = appState.getModule(CoreModule.class)
-				.getEntityProvider();
+		coreModule = appState.getModule(CoreModule.class);
+		entityProvider = coreModule.getEntityProvider();
 	}
 
 	public void messageReceived(MessageConnection source, Message message) {
 		RpcCallMessage castMessage = (RpcCallMessage) message;
+		if (coreModule.deferIfPending(castMessage.entityId, this, message)) {
+			return;
+		}
 		DynamicEntityData data = entityProvider.getData(castMessage.entityId);
+		StaticEntityData sed = data == null ? null : data
+				.getActiveStaticData(source);
+		if (sed == null) {
+			LOGGER.info("Received invocation request for entity "
+					+ castMessage.entityId + " which is not visible.");
+			return;
+		}
+		RpcMethodData methodData = sed.getData(castMessage.methodId,
+				RpcMethodData.class);
+		if (methodData.deferIfPending(coreModule, this, castMessage)) {
+			return;
+		}
 		Message response;
-		if ((response = data.getActiveStaticData(source)
-				.getData(castMessage.methodId, RpcMethodData.class)
-				.executeFromRemote(source, data, castMessage, appState)) != null) {
+		if ((response = methodData.executeFromRemote(source, data,
+				castMessage, appState)) != null) {
 			source.send(response);
 		}
 	}
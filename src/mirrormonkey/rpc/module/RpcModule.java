@@ -115,7 +115,8 @@ public class RpcModule extends MirrorMonkeyModule<SyncAppState<?>> {
 	 */
 	public RpcModule(SyncAppState<?> appState, CallRegistry callRegistry) {
 		this(appState, new RpcCallListener(appState), new RpcResultListener(
-				callRegistry), new RpcErrorListener(callRegistry), callRegistry);
+				appState, callRegistry), new RpcErrorListener(callRegistry),
+				callRegistry);
 	}
 
 	/**
@@ -37,6 +37,8 @@
 
 package mirrormonkey.rpc.module;
 
+import mirrormonkey.core.module.CoreModule;
+import mirrormonkey.framework.SyncAppState;
 import mirrormonkey.rpc.messages.RpcResultMessage;
 
 import com.jme3.network.Message;
@@ -58,15 +60,25 @@ public class RpcResultListener implements MessageListener<MessageConnection> {
 	 */
 	private final CallRegistry callRegistry;
 
+	/**
+	 * Holds back results referring to entities that have not been
+	 * instantiated yet.
+	 */
+	private final CoreModule<?, ?> coreModule;
+
 	/**
 	 * Crates a new RpcResultListener that will fetch call data from a given
 	 * <tt>CallRegistry</tt>.
 	 * 
+	 * @param appState
+	 *            local <tt>SyncAppState</tt>
 	 * @param callRegistry
 	 *            the call registry that stores data about invocation requests
 	 */
-	public RpcResultListener(CallRegistry callRegistry) {
+	public RpcResultListener(SyncAppState<?> appState,
+			CallRegistry callRegistry) {
 		this.callRegistry = callRegistry;
+		coreModule = appState.getModule(CoreModule.class);
 	}
 
 	public void messageReceived(MessageConnection source, Message message) {
@@ -75,6 +87,10 @@ public class RpcResultListener implements MessageListener<MessageConnection> {
 				.getRegisteredCall(castMessage.callId);
 		// Can be null if call timed out
 		if (registeredCall != null) {
+			if (registeredCall.getMethodData().deferIfPending(coreModule,
+					this, castMessage)) {
+				return;
+			}
 			registeredCall.resultArrived(source, castMessage);
 		}
 	}
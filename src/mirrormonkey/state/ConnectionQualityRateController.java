@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2011, 2012, Philipp Christian Loewner
+ * All rights reserved.
+ * 
+ * Disclaimer:
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * This software uses parts of:
+ * jMonkeyEngine
+ * Copyright (c) 2009-2010 jMonkeyEngine
+ * All rights reserved.
+ * 
+ * For jMonkeyEngine, the same disclaimer as printed above applies.
+ */
+
+package mirrormonkey.state;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import mirrormonkey.framework.connection.ConnectionInfo;
+
+/**
+ * <tt>SendRateController</tt> that halves the send rates of update sets with
+ * low priority whenever the measured loss or jitter of a connection rises
+ * above a threshold, and doubles them again as soon as the connection
+ * recovers.
+ * 
+ * Quality is checked at most once per adjustment interval per connection,
+ * using the values estimated by the time synchronization of
+ * <tt>ConnectionInfo</tt>. Degrading and restoring use different thresholds,
+ * so rates do not oscillate if a connection stays close to a threshold.
+ * 
+ * Update sets that declare a priority equal to or higher than the protected
+ * priority are always sent at full rate.
+ * 
+ * @author Philipp Christian Loewner
+ * 
+ */
+public class ConnectionQualityRateController implements SendRateController {
+
+	/**
+	 * Default loss above which rates are halved.
+	 */
+	public static final float DEFAULT_DEGRADE_LOSS = 0.1f;
+
+	/**
+	 * Default loss below which rates are doubled again.
+	 */
+	public static final float DEFAULT_RESTORE_LOSS = 0.02f;
+
+	/**
+	 * Default jitter above which rates are halved, in nanoseconds.
+	 */
+	public static final long DEFAULT_DEGRADE_JITTER = 50000000;
+
+	/**
+	 * Default jitter below which rates are doubled again, in nanoseconds.
+	 */
+	public static final long DEFAULT_RESTORE_JITTER = 15000000;
+
+	/**
+	 * Default minimum time between two adjustments, in nanoseconds.
+	 */
+	public static final long DEFAULT_ADJUST_INTERVAL = 1000000000;
+
+	/**
+	 * Default number of times that rates can be halved.
+	 */
+	public static final int DEFAULT_MAX_LEVEL = 3;
+
+	/**
+	 * Default priority from which on update sets are never throttled.
+	 */
+	public static final int DEFAULT_PROTECTED_PRIORITY = 1;
+
+	/**
+	 * Loss above which rates are halved.
+	 */
+	private final float degradeLoss;
+
+	/**
+	 * Loss below which rates are doubled again.
+	 */
+	private final float restoreLoss;
+
+	/**
+	 * Jitter above which rates are halved, in nanoseconds.
+	 */
+	private final long degradeJitter;
+
+	/**
+	 * Jitter below which rates are doubled again, in nanoseconds.
+	 */
+	private final long restoreJitter;
+
+	/**
+	 * Minimum time between two adjustments for the same connection, in
+	 * nanoseconds.
+	 */
+	private final long adjustInterval;
+
+	/**
+	 * Maximum number of times that rates can be halved.
+	 */
+	private final int maxLevel;
+
+	/**
+	 * Update sets with this or a higher priority are never throttled.
+	 */
+	private final int protectedPriority;
+
+	/**
+	 * Current throttle level per connection. Connections are not referenced
+	 * strongly, so data about closed connections is discarded automatically.
+	 */
+	private final Map<ConnectionInfo<?>, Level> levels;
+
+	/**
+	 * Creates a new <tt>ConnectionQualityRateController</tt> using the default
+	 * thresholds.
+	 */
+	public ConnectionQualityRateController() {
+		this(DEFAULT_DEGRADE_LOSS, DEFAULT_RESTORE_LOSS,
+				DEFAULT_DEGRADE_JITTER, DEFAULT_RESTORE_JITTER,
+				DEFAULT_ADJUST_INTERVAL, DEFAULT_MAX_LEVEL,
+				DEFAULT_PROTECTED_PRIORITY);
+	}
+
+	/**
+	 * Creates a new <tt>ConnectionQualityRateController</tt> using custom
+	 * thresholds.
+	 * 
+	 * @param degradeLoss
+	 *            loss above which rates are halved
+	 * @param restoreLoss
+	 *            loss below which rates are doubled again
+	 * @param degradeJitter
+	 *            jitter above which rates are halved, in nanoseconds
+	 * @param restoreJitter
+	 *            jitter below which rates are doubled again, in nanoseconds
+	 * @param adjustInterval
+	 *            minimum time between two adjustments, in nanoseconds
+	 * @param maxLevel
+	 *            maximum number of times that rates can be halved
+	 * @param protectedPriority
+	 *            update sets with this or a higher priority are never
+	 *            throttled
+	 */
+	public ConnectionQualityRateController(float degradeLoss,
+			float restoreLoss, long degradeJitter, long restoreJitter,
+			long adjustInterval, int maxLevel, int protectedPriority) {
+		if (restoreLoss > degradeLoss || restoreJitter > degradeJitter) {
+			throw new IllegalArgumentException(
+					"Restore thresholds must not exceed degrade thresholds.");
+		}
+		this.degradeLoss = degradeLoss;
+		this.restoreLoss = restoreLoss;
+		this.degradeJitter = degradeJitter;
+		this.restoreJitter = restoreJitter;
+		this.adjustInterval = adjustInterval;
+		this.maxLevel = maxLevel;
+		this.protectedPriority = protectedPriority;
+		levels = new WeakHashMap<ConnectionInfo<?>, Level>();
+	}
+
+	public int getRateDivider(ConnectionInfo<?> connection, int priority) {
+		if (priority >= protectedPriority) {
+			return 1;
+		}
+		return 1 << getLevel(connection);
+	}
+
+	/**
+	 * Returns the current throttle level of a connection, adjusting it first
+	 * if the adjustment interval has passed.
+	 * 
+	 * @param connection
+	 *            the connection
+	 * @return number of times that rates of low priority update sets are
+	 *         currently halved for <tt>connection</tt>
+	 */
+	public int getLevel(ConnectionInfo<?> connection) {
+		long now = System.nanoTime();
+		Level l = levels.get(connection);
+		if (l == null) {
+			l = new Level(now);
+			levels.put(connection, l);
+		} else if (now - l.lastAdjust >= adjustInterval) {
+			l.lastAdjust = now;
+			if (isDegraded(connection)) {
+				if (l.level < maxLevel) {
+					l.level++;
+				}
+			} else if (isRecovered(connection) && l.level > 0) {
+				l.level--;
+			}
+		}
+		return l.level;
+	}
+
+	/**
+	 * @param connection
+	 *            the connection to check
+	 * @return <tt>true</tt> if rates should be lowered for
+	 *         <tt>connection</tt>, <tt>false</tt> otherwise
+	 */
+	protected boolean isDegraded(ConnectionInfo<?> connection) {
+		return connection.getEstimatedLoss() > degradeLoss
+				|| connection.getEstimatedJitter() > degradeJitter;
+	}
+
+	/**
+	 * @param connection
+	 *            the connection to check
+	 * @return <tt>true</tt> if rates may be raised again for
+	 *         <tt>connection</tt>, <tt>false</tt> otherwise
+	 */
+	protected boolean isRecovered(ConnectionInfo<?> connection) {
+		return connection.getEstimatedLoss() < restoreLoss
+				&& connection.getEstimatedJitter() < restoreJitter;
+	}
+
+	/**
+	 * Throttle state of a single connection.
+	 * 
+	 * @author Philipp Christian Loewner
+	 * 
+	 */
+	private static final class Level {
+
+		/**
+		 * Number of times that rates are currently halved.
+		 */
+		private int level;
+
+		/**
+		 * Value of <tt>System.nanoTime</tt> at the last adjustment.
+		 */
+		private long lastAdjust;
+
+		/**
+		 * Creates a new <tt>Level</tt> at full rate.
+		 * 
+		 * @param now
+		 *            current value of <tt>System.nanoTime</tt>
+		 */
+		public Level(long now) {
+			level = 0;
+			lastAdjust = now;
+		}
+
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2011, 2012, Philipp Christian Loewner
+ * All rights reserved.
+ * 
+ * Disclaimer:
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * This software uses parts of:
+ * jMonkeyEngine
+ * Copyright (c) 2009-2010 jMonkeyEngine
+ * All rights reserved.
+ * 
+ * For jMonkeyEngine, the same disclaimer as printed above applies.
+ */
+
+package mirrormonkey.state;
+
+import mirrormonkey.framework.connection.ConnectionInfo;
+import mirrormonkey.framework.entity.SyncEntity;
+
+import com.jme3.math.Vector3f;
+
+/**
+ * <tt>UpdateRelevanceProvider</tt> that assigns update dividers by the
+ * distance between an entity and the point of view of a connection, for
+ * example the position of the camera of the client.
+ * 
+ * Distances are grouped into bands. For an update set with a frequency of 30
+ * Hz, the bands <tt>{ 50, 200 }</tt> and dividers <tt>{ 1, 4, 15 }</tt> send
+ * updates at 30 Hz for entities closer than 50, at 7.5 Hz for entities closer
+ * than 200 and at 2 Hz for every entity further away.
+ * 
+ * If either position is unknown, then updates are sent at full frequency.
+ * 
+ * @author Philipp Christian Loewner
+ * 
+ */
+public abstract class DistanceRelevanceProvider implements
+		UpdateRelevanceProvider {
+
+	/**
+	 * Squared upper distance limit for every band, ascending.
+	 */
+	private final float[] squaredLimits;
+
+	/**
+	 * Divider for every band. Contains one more element than
+	 * <tt>squaredLimits</tt>; the last divider is used for every distance
+	 * beyond the last limit.
+	 */
+	private final int[] dividers;
+
+	/**
+	 * Creates a new <tt>DistanceRelevanceProvider</tt> for the given distance
+	 * bands.
+	 * 
+	 * @param limits
+	 *            upper distance limit for every band, in ascending order
+	 * @param dividers
+	 *            divider for every band, must contain exactly one element more
+	 *            than <tt>limits</tt>
+	 */
+	public DistanceRelevanceProvider(float[] limits, int[] dividers) {
+		if (dividers.length != limits.length + 1) {
+			throw new IllegalArgumentException(
+					"Need exactly one divider more than limits. Limits: "
+							+ limits.length + " dividers: " + dividers.length);
+		}
+		squaredLimits = new float[limits.length];
+		for (int i = 0; i < limits.length; i++) {
+			if (i > 0 && limits[i] < limits[i - 1]) {
+				throw new IllegalArgumentException(
+						"Limits must be in ascending order.");
+			}
+			squaredLimits[i] = limits[i] * limits[i];
+		}
+		this.dividers = dividers.clone();
+	}
+
+	public int getUpdateDivider(SyncEntity instance,
+			ConnectionInfo<?> connection) {
+		Vector3f entityPosition = getEntityPosition(instance);
+		if (entityPosition == null) {
+			return 1;
+		}
+		Vector3f viewerPosition = getViewerPosition(connection);
+		if (viewerPosition == null) {
+			return 1;
+		}
+		float distance = entityPosition.distanceSquared(viewerPosition);
+		for (int i = 0; i < squaredLimits.length; i++) {
+			if (distance < squaredLimits[i]) {
+				return dividers[i];
+			}
+		}
+		return dividers[squaredLimits.length];
+	}
+
+	/**
+	 * Returns the current position of an entity.
+	 * 
+	 * @param instance
+	 *            local instance of the entity
+	 * @return position of <tt>instance</tt>, or <tt>null</tt> if it has no
+	 *         position
+	 */
+	protected abstract Vector3f getEntityPosition(SyncEntity instance);
+
+	/**
+	 * Returns the current point of view of a connection.
+	 * 
+	 * @param connection
+	 *            the connection that updates are sent to
+	 * @return position that the connection views the scene from, or
+	 *         <tt>null</tt> if it is not known
+	 */
+	protected abstract Vector3f getViewerPosition(ConnectionInfo<?> connection);
+
+}
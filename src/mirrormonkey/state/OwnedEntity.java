@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2011, 2012, Philipp Christian Loewner
+ * All rights reserved.
+ * 
+ * Disclaimer:
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * This software uses parts of:
+ * jMonkeyEngine
+ * Copyright (c) 2009-2010 jMonkeyEngine
+ * All rights reserved.
+ * 
+ * For jMonkeyEngine, the same disclaimer as printed above applies.
+ */
+
+package mirrormonkey.state;
+
+import mirrormonkey.framework.entity.SyncEntity;
+
+import com.jme3.network.MessageConnection;
+
+/**
+ * Indicates that the implementing entity is owned by a particular connection.
+ * 
+ * Ownership is only evaluated by <tt>UpdateVisibilityRules</tt> like
+ * <tt>UpdateVisibilityRule.OwnerOnly</tt>. It does not influence which
+ * connections an entity is visible for, so private values like ammunition or
+ * inventory can be sent to the owner only while every other field of the same
+ * entity is still sent to every connection.
+ * 
+ * @author Philipp Christian Loewner
+ * 
+ */
+public interface OwnedEntity extends SyncEntity {
+
+	/**
+	 * Returns the connection that owns this entity. May change at any time;
+	 * the new owner will be taken into account for the next outbound update.
+	 * 
+	 * @return the connection that owns this entity, or <tt>null</tt> if it is
+	 *         not owned by any connection
+	 */
+	public MessageConnection getOwner();
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2011, 2012, Philipp Christian Loewner
+ * All rights reserved.
+ * 
+ * Disclaimer:
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * This software uses parts of:
+ * jMonkeyEngine
+ * Copyright (c) 2009-2010 jMonkeyEngine
+ * All rights reserved.
+ * 
+ * For jMonkeyEngine, the same disclaimer as printed above applies.
+ */
+
+package mirrormonkey.state;
+
+import mirrormonkey.framework.connection.ConnectionInfo;
+
+/**
+ * Adapts the frequency at which update sets are sent to individual connections
+ * to the quality of those connections.
+ * 
+ * If a <tt>SendRateController</tt> is set for the <tt>StateModule</tt>, then it
+ * will be asked for a divider for every connection and update set whenever the
+ * update set is due. Dividers work exactly like the ones returned by
+ * <tt>UpdateRelevanceProvider</tt>; if both are set, then their dividers are
+ * multiplied.
+ * 
+ * @author Philipp Christian Loewner
+ * 
+ */
+public interface SendRateController {
+
+	/**
+	 * Returns the divider for the update frequency of an update set towards a
+	 * connection.
+	 * 
+	 * @param connection
+	 *            connection that the update would be sent to
+	 * @param priority
+	 *            priority of the update set, as declared in
+	 *            <tt>UpdateState</tt>
+	 * @return number of due updates per update that is actually sent to
+	 *         <tt>connection</tt>; values smaller than <tt>1</tt> are treated
+	 *         as <tt>1</tt>
+	 */
+	public int getRateDivider(ConnectionInfo<?> connection, int priority);
+
+}
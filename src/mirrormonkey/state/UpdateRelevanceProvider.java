@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2011, 2012, Philipp Christian Loewner
+ * All rights reserved.
+ * 
+ * Disclaimer:
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * This software uses parts of:
+ * jMonkeyEngine
+ * Copyright (c) 2009-2010 jMonkeyEngine
+ * All rights reserved.
+ * 
+ * For jMonkeyEngine, the same disclaimer as printed above applies.
+ */
+
+package mirrormonkey.state;
+
+import mirrormonkey.framework.connection.ConnectionInfo;
+import mirrormonkey.framework.entity.SyncEntity;
+
+/**
+ * Scales the frequency at which update sets of entities are sent to individual
+ * connections.
+ * 
+ * The frequency declared in <tt>UpdateState</tt> is the maximum frequency at
+ * which an update set is read. If a <tt>UpdateRelevanceProvider</tt> is set for
+ * the <tt>StateModule</tt>, then it will be asked for a divider for every
+ * entity and connection whenever an update set is due. If the divider is
+ * <tt>n</tt>, then the update set will only be sent to the connection on every
+ * <tt>n</tt>-th due update. Updates for different entities with the same
+ * divider are spread across the due updates, so not every far entity is sent
+ * in the same frame.
+ * 
+ * If values of a set change while it is skipped for a connection, then every
+ * field of the set will be sent to that connection on its next update, so
+ * value tracking never causes connections with a divider greater than
+ * <tt>1</tt> to miss changes.
+ * 
+ * Implementations are called very frequently and should be fast.
+ * 
+ * @author Philipp Christian Loewner
+ * 
+ */
+public interface UpdateRelevanceProvider {
+
+	/**
+	 * Returns the divider for the update frequency of an entity towards a
+	 * connection.
+	 * 
+	 * @param instance
+	 *            local instance of the entity that is updated
+	 * @param connection
+	 *            connection that the update would be sent to
+	 * @return number of due updates per update that is actually sent to
+	 *         <tt>connection</tt>; values smaller than <tt>1</tt> are treated
+	 *         as <tt>1</tt>
+	 */
+	public int getUpdateDivider(SyncEntity instance,
+			ConnectionInfo<?> connection);
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2011, 2012, Philipp Christian Loewner
+ * All rights reserved.
+ * 
+ * Disclaimer:
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * This software uses parts of:
+ * jMonkeyEngine
+ * Copyright (c) 2009-2010 jMonkeyEngine
+ * All rights reserved.
+ * 
+ * For jMonkeyEngine, the same disclaimer as printed above applies.
+ */
+
+package mirrormonkey.state;
+
+import mirrormonkey.framework.connection.ConnectionInfo;
+import mirrormonkey.framework.entity.SyncEntity;
+
+/**
+ * Decides whether the value of a synchronized field or virtual field may be
+ * sent to a particular connection.
+ * 
+ * Implementing classes are referenced by the <tt>UpdateVisibility</tt>
+ * annotation and must provide a public no-arg constructor. One instance is
+ * created per synchronized field and static synchronization context, so
+ * implementations should be stateless.
+ * 
+ * Rules are evaluated on the side that reads the value of the field, once per
+ * outbound update message and connection that the entity is active for.
+ * 
+ * @author Philipp Christian Loewner
+ * 
+ */
+public interface UpdateVisibilityRule {
+
+	/**
+	 * Checks whether the value of a field may be sent to a connection.
+	 * 
+	 * @param instance
+	 *            local instance of the entity that the field belongs to
+	 * @param connection
+	 *            connection that the update would be sent to
+	 * @return <tt>true</tt> if the value may be sent to <tt>connection</tt>,
+	 *         <tt>false</tt> if it must be omitted from the update message
+	 */
+	public boolean isVisible(SyncEntity instance, ConnectionInfo<?> connection);
+
+	/**
+	 * Default rule: Field values are sent to every connection that the entity
+	 * is visible for.
+	 * 
+	 * Fields using this rule take the fast path when update messages are
+	 * created, as the same message can be shared by every connection.
+	 * 
+	 * @author Philipp Christian Loewner
+	 * 
+	 */
+	public static final class All implements UpdateVisibilityRule {
+
+		public boolean isVisible(SyncEntity instance,
+				ConnectionInfo<?> connection) {
+			return true;
+		}
+
+	}
+
+	/**
+	 * Field values are only sent to the connection that owns the entity. If
+	 * the local instance does not implement <tt>OwnedEntity</tt>, then the
+	 * value is not sent at all.
+	 * 
+	 * @author Philipp Christian Loewner
+	 * 
+	 */
+	public static final class OwnerOnly implements UpdateVisibilityRule {
+
+		public boolean isVisible(SyncEntity instance,
+				ConnectionInfo<?> connection) {
+			return OwnedEntity.class.isInstance(instance)
+					&& ((OwnedEntity) instance).getOwner() == connection
+							.getConnection();
+		}
+
+	}
+
+	/**
+	 * Field values are sent to every connection except the one that owns the
+	 * entity. Useful for values that the owner predicts locally.
+	 * 
+	 * @author Philipp Christian Loewner
+	 * 
+	 */
+	public static final class AllButOwner implements UpdateVisibilityRule {
+
+		public boolean isVisible(SyncEntity instance,
+				ConnectionInfo<?> connection) {
+			return !OwnedEntity.class.isInstance(instance)
+					|| ((OwnedEntity) instance).getOwner() != connection
+							.getConnection();
+		}
+
+	}
+
+}
@@ -39,6 +39,7 @@ package mirrormonkey.state.annotations;
 
 import mirrormonkey.state.DominantEntity;
 import mirrormonkey.state.RelayEntity;
+import mirrormonkey.state.UpdateVisibilityRule;
 import mirrormonkey.state.member.StaticMemberStateDataIR;
 import mirrormonkey.util.annotations.control.DefinePreset;
 import mirrormonkey.util.annotations.control.IRClass;
@@ -60,6 +61,7 @@ public class StateAnnotationPresets {
 	@IRClass(StaticMemberStateDataIR.class)
 	@TrackValue(false)
 	@UpdateSetId(UpdateSetId.NO_SET)
+	@UpdateVisibility(UpdateVisibilityRule.All.class)
 	@RelayState(@ClassFilter(hierarchy = HierarchyType.HIERARCHY, value = RelayEntity.class))
 	@DominantState(@ClassFilter(hierarchy = HierarchyType.HIERARCHY, value = DominantEntity.class))
 	public Object field;
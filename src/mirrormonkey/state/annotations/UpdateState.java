@@ -74,4 +74,30 @@ public @interface UpdateState {
 	 */
 	public boolean reliable() default false;
 
+	/**
+	 * If a <tt>SendRateController</tt> is set for the <tt>StateModule</tt>,
+	 * then it may lower the frequency of updates with low priority for
+	 * connections of poor quality. Fields that declare the same update set ID
+	 * are updated using the highest priority among them.
+	 * 
+	 * @return priority of the annotated field or virtual field; higher values
+	 *         indicate more important fields
+	 */
+	public int priority() default 0;
+
+	/**
+	 * Only used if <tt>reliable</tt> is <tt>false</tt>. If greater than
+	 * <tt>0</tt>, then every time that the value of the annotated field is
+	 * sent because it changed, it will also be sent along with the next
+	 * <tt>redundancy</tt> update messages for its update set, even if it did
+	 * not change again. This way, a single lost update message does not cause
+	 * a permanent divergence if the value stops changing and value tracking is
+	 * used. Fields that declare the same update set ID are updated using the
+	 * highest redundancy among them.
+	 * 
+	 * @return number of additional update messages that the value of the
+	 *         annotated field or virtual field is sent with after it changed
+	 */
+	public int redundancy() default 0;
+
 }
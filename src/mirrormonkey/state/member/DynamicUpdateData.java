@@ -96,6 +96,13 @@ public class DynamicUpdateData implements DynamicMemberData {
 		return fieldData.id;
 	}
 
+	/**
+	 * @return static data about the represented field
+	 */
+	public StaticUpdateMemberData getFieldData() {
+		return fieldData;
+	}
+
 	/**
 	 * @return <tt>true</tt> if the value tracking feature determined that the
 	 *         value of this field has changed since the last update message was
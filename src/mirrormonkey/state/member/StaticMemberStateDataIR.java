@@ -46,6 +46,7 @@ import static mirrormonkey.state.member.BeanUtil.setterName;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.util.Map.Entry;
@@ -59,6 +60,7 @@ import mirrormonkey.framework.entity.StaticEntityDataIR;
 import mirrormonkey.framework.member.MemberDataIR;
 import mirrormonkey.framework.member.StaticMemberData;
 import mirrormonkey.framework.parameter.ValueInterpreter;
+import mirrormonkey.state.UpdateVisibilityRule;
 import mirrormonkey.state.annotations.BindFieldFrom;
 import mirrormonkey.state.annotations.BindFieldType;
 import mirrormonkey.state.annotations.DominantState;
@@ -66,6 +68,7 @@ import mirrormonkey.state.annotations.RelayState;
 import mirrormonkey.state.annotations.TrackValue;
 import mirrormonkey.state.annotations.UpdateSetId;
 import mirrormonkey.state.annotations.UpdateState;
+import mirrormonkey.state.annotations.UpdateVisibility;
 import mirrormonkey.state.member.accessor.FieldReadAccessor;
 import mirrormonkey.state.member.accessor.FieldWriteAccessor;
 import mirrormonkey.state.member.accessor.GetterReadAccessor;
@@ -257,6 +260,7 @@ public class StaticMemberStateDataIR extends MemberIR implements MemberDataIR {
 		addCollectType(EntityInjection.class);
 		addCollectType(UpdateState.class);
 		addCollectType(UpdateSetId.class);
+		addCollectType(UpdateVisibility.class);
 	}
 
 	@Override
@@ -495,6 +499,7 @@ public class StaticMemberStateDataIR extends MemberIR implements MemberDataIR {
 		UpdateState us = getCollectedAnnotation(UpdateState.class);
 		TrackValue tv = getCollectedAnnotation(TrackValue.class);
 		UpdateSetId usi = getCollectedAnnotation(UpdateSetId.class);
+		UpdateVisibility uv = getCollectedAnnotation(UpdateVisibility.class);
 
 		String filters = "";
 		for (ClassFilter cf : ds.value()) {
@@ -592,10 +597,43 @@ public class StaticMemberStateDataIR extends MemberIR implements MemberDataIR {
 		ValueInterpreter parameterInterpreter = entityProvider.getInterpreter(
 				this, type);
 
+		UpdateVisibilityRule visibility = null;
+		if (readAccessor != null) {
+			visibility = createVisibilityRule(uv);
+		}
+
 		return new StaticUpdateMemberData(id, new StateUpdateKey(),
-				us.reliable(), tv.value(), us.value(), usi.value(),
-				readAccessor, writeAccessor, parameterInterpreter, name,
-				localIR.getAppState().getModule(CoreModule.class));
+				us.reliable(), tv.value(), us.value(), us.priority(),
+				us.redundancy(), usi.value(), readAccessor, writeAccessor,
+				parameterInterpreter, name,
+				localIR.getAppState().getModule(CoreModule.class), visibility);
+	}
+
+	/**
+	 * Creates the <tt>UpdateVisibilityRule</tt> that decides which connections
+	 * the value of the tracked field is sent to.
+	 * 
+	 * @param uv
+	 *            collected annotation, or <tt>null</tt> if none was collected
+	 * @return new instance of the rule class specified by <tt>uv</tt>, or
+	 *         <tt>null</tt> if the value of the tracked field is sent to
+	 *         every connection
+	 */
+	protected UpdateVisibilityRule createVisibilityRule(UpdateVisibility uv) {
+		if (uv == null || uv.value().equals(UpdateVisibilityRule.All.class)) {
+			return null;
+		}
+		try {
+			return uv.value().getConstructor().newInstance();
+		} catch (InvocationTargetException e) {
+			throw new IllegalStateException(this
+					+ ": Visibility rule constructor failed: " + uv.value(),
+					e.getCause());
+		} catch (Exception e) {
+			throw new IllegalStateException(this
+					+ ": Could not instantiate visibility rule: " + uv.value(),
+					e);
+		}
 	}
 
 	/**
@@ -46,6 +46,7 @@ import mirrormonkey.framework.member.MemberDataKey;
 import mirrormonkey.framework.member.StaticMemberData;
 import mirrormonkey.framework.parameter.IdentityAwareInterpreter;
 import mirrormonkey.framework.parameter.ValueInterpreter;
+import mirrormonkey.state.UpdateVisibilityRule;
 import mirrormonkey.state.member.accessor.ValueReadAccessor;
 import mirrormonkey.state.member.accessor.ValueWriteAccessor;
 
@@ -99,6 +100,18 @@ public class StaticUpdateMemberData implements StaticMemberData {
 	 */
 	public final long freq;
 
+	/**
+	 * Priority of the represented field when send rates are adapted to
+	 * connection quality.
+	 */
+	public final int priority;
+
+	/**
+	 * Number of additional unreliable update messages that the value of the
+	 * represented field is sent with after it changed.
+	 */
+	public final int redundancy;
+
 	/**
 	 * Set ID for the represented field (or <tt>NO_SET</tt> if the represented
 	 * field does not belong to a particular update set).
@@ -128,6 +141,13 @@ public class StaticUpdateMemberData implements StaticMemberData {
 	 */
 	public final String name;
 
+	/**
+	 * Decides which connections the value of the represented field is sent to
+	 * (or <tt>null</tt> if it is sent to every connection that the entity is
+	 * visible for).
+	 */
+	public final UpdateVisibilityRule visibility;
+
 	/**
 	 * Creates a new <tt>StaticUpdateMemberData</tt> that contains given data.
 	 * 
@@ -143,6 +163,11 @@ public class StaticUpdateMemberData implements StaticMemberData {
 	 *            otherwise
 	 * @param freq
 	 *            time between updates, in nanoseconds
+	 * @param priority
+	 *            priority when send rates are adapted to connection quality
+	 * @param redundancy
+	 *            number of additional unreliable update messages that a
+	 *            changed value is sent with
 	 * @param set
 	 *            set id
 	 * @param readAccessor
@@ -155,22 +180,28 @@ public class StaticUpdateMemberData implements StaticMemberData {
 	 *            name of the field
 	 * @param coreModule
 	 *            keeps track of entity data
+	 * @param visibility
+	 *            decides which connections the value is sent to, or
+	 *            <tt>null</tt> if it is sent to every connection
 	 */
 	public StaticUpdateMemberData(int id, MemberDataKey key, boolean reliable,
-			boolean track, long freq, int set, ValueReadAccessor readAccessor,
+			boolean track, long freq, int priority, int redundancy, int set, ValueReadAccessor readAccessor,
 			ValueWriteAccessor writeAccessor,
 			ValueInterpreter parameterInterpreter, String name,
-			CoreModule<?, ?> coreModule) {
+			CoreModule<?, ?> coreModule, UpdateVisibilityRule visibility) {
 		this.id = id;
 		this.key = key;
 		this.reliable = reliable;
 		this.track = track;
 		this.freq = freq;
+		this.priority = priority;
+		this.redundancy = reliable ? 0 : redundancy;
 		this.set = set;
 		this.readAccessor = readAccessor;
 		this.writeAccessor = writeAccessor;
 		this.parameterInterpreter = parameterInterpreter;
 		this.name = name;
+		this.visibility = visibility;
 		entity = IdentityAwareInterpreter.class
 				.isInstance(parameterInterpreter);
 		if (ClientCoreModule.class.isInstance(coreModule)) {
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2011, 2012, Philipp Christian Loewner
+ * All rights reserved.
+ * 
+ * Disclaimer:
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * This software uses parts of:
+ * jMonkeyEngine
+ * Copyright (c) 2009-2010 jMonkeyEngine
+ * All rights reserved.
+ * 
+ * For jMonkeyEngine, the same disclaimer as printed above applies.
+ */
+
+package mirrormonkey.state.module;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import mirrormonkey.framework.entity.StaticEntityData;
+
+import com.jme3.network.Message;
+import com.jme3.network.serializing.Serializer;
+
+/**
+ * Collects <tt>UpdateSetStatistics</tt> for every update set in every static
+ * synchronization context that the <tt>StateModule</tt> handles.
+ * 
+ * Collecting statistics is disabled by default. While it is disabled, the
+ * state module only performs a single check per update set and received
+ * message. While it is enabled, every sent update message is additionally
+ * serialized once to measure its size.
+ * 
+ * Counters are updated from the thread that updates the <tt>SyncAppState</tt>
+ * without any synchronization. <tt>ReplicationStatistics</tt> is therefore
+ * not thread safe: <tt>setEnabled</tt> and <tt>snapshot</tt> must only be
+ * called from that same thread, for example from an <tt>AppState</tt> or a
+ * task enqueued to the application.
+ * 
+ * @author Philipp Christian Loewner
+ * 
+ */
+public final class ReplicationStatistics {
+
+	/**
+	 * Size of the buffer that update messages are serialized into to measure
+	 * their size. Larger messages are not counted.
+	 */
+	public static final int MEASURE_BUFFER_SIZE = 65536;
+
+	/**
+	 * Statistics by static synchronization context and update set ID.
+	 */
+	private final Map<SetKey, UpdateSetStatistics> sets;
+
+	/**
+	 * Update messages are serialized into this buffer to measure their size.
+	 */
+	private final ByteBuffer measureBuffer;
+
+	/**
+	 * Determines whether statistics are currently collected.
+	 */
+	private boolean enabled;
+
+	/**
+	 * Creates new, disabled <tt>ReplicationStatistics</tt>.
+	 */
+	public ReplicationStatistics() {
+		sets = new HashMap<SetKey, UpdateSetStatistics>();
+		measureBuffer = ByteBuffer.allocate(MEASURE_BUFFER_SIZE);
+		enabled = false;
+	}
+
+	/**
+	 * @return <tt>true</tt> if statistics are currently collected,
+	 *         <tt>false</tt> otherwise
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Starts or stops collecting statistics. Counters are kept when
+	 * collecting is stopped.
+	 * 
+	 * @param enabled
+	 *            <tt>true</tt> to start collecting statistics, <tt>false</tt>
+	 *            to stop
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Returns the live statistics for an update set, creating them if
+	 * necessary. Internal use only.
+	 * 
+	 * @param staticData
+	 *            static synchronization context
+	 * @param setId
+	 *            ID of the update set
+	 * @return statistics that will be updated for the update set
+	 */
+	public UpdateSetStatistics get(StaticEntityData staticData,
+			int setId) {
+		SetKey key = new SetKey(staticData, setId);
+		UpdateSetStatistics s = sets.get(key);
+		if (s == null) {
+			s = new UpdateSetStatistics(staticData.getLocalClass(),
+					staticData.getConnectedClass(), setId);
+			sets.put(key, s);
+		}
+		return s;
+	}
+
+	/**
+	 * Returns copies of the statistics of every update set.
+	 * 
+	 * @return copies of the current statistics of every update set for which
+	 *         statistics have been collected
+	 */
+	public List<UpdateSetStatistics> snapshot() {
+		return snapshot(false);
+	}
+
+	/**
+	 * Returns copies of the statistics of every update set, optionally
+	 * resetting the live counters afterwards so that the next snapshot only
+	 * contains values collected in between.
+	 * 
+	 * @param reset
+	 *            <tt>true</tt> to reset every counter after copying it,
+	 *            <tt>false</tt> to keep accumulating
+	 * @return copies of the current statistics of every update set for which
+	 *         statistics have been collected
+	 */
+	public List<UpdateSetStatistics> snapshot(boolean reset) {
+		List<UpdateSetStatistics> l = new ArrayList<UpdateSetStatistics>(
+				sets.size());
+		for (UpdateSetStatistics s : sets.values()) {
+			l.add(new UpdateSetStatistics(s));
+			if (reset) {
+				s.clear();
+			}
+		}
+		return l;
+	}
+
+	/**
+	 * Measures the serialized size of a message. Internal use only.
+	 * 
+	 * @param message
+	 *            the message to measure
+	 * @return number of bytes that <tt>message</tt> is serialized to, or
+	 *         <tt>0</tt> if it can not be serialized into the measuring buffer
+	 */
+	public int measure(Message message) {
+		measureBuffer.clear();
+		try {
+			Serializer.writeClassAndObject(measureBuffer, message);
+		} catch (Exception e) {
+			return 0;
+		}
+		return measureBuffer.position();
+	}
+
+	/**
+	 * Key for statistics of a single update set in a single static
+	 * synchronization context.
+	 * 
+	 * @author Philipp Christian Loewner
+	 * 
+	 */
+	private static final class SetKey {
+
+		/**
+		 * Static synchronization context.
+		 */
+		private final StaticEntityData staticData;
+
+		/**
+		 * Update set ID.
+		 */
+		private final int setId;
+
+		/**
+		 * Creates a new <tt>SetKey</tt>.
+		 * 
+		 * @param staticData
+		 *            static synchronization context
+		 * @param setId
+		 *            update set ID
+		 */
+		public SetKey(StaticEntityData staticData, int setId) {
+			this.staticData = staticData;
+			this.setId = setId;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * staticData.hashCode() + setId;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!SetKey.class.isInstance(o)) {
+				return false;
+			}
+			SetKey k = (SetKey) o;
+			return staticData == k.staticData && setId == k.setId;
+		}
+
+	}
+
+}
@@ -79,20 +79,32 @@ public class StateMessageListener implements MessageListener<MessageConnection>
 	 */
 	private final CoreModule<?, ?> coreModule;
 
+	/**
+	 * Collects statistics about applied updates.
+	 */
+	private final ReplicationStatistics statistics;
+
 	/**
 	 * Creates a new <tt>StateMessageListener</tt>.
 	 * 
 	 * @param appState
 	 *            local <tt>SyncAppState</tt> responsible for managing
 	 *            synchronization
+	 * @param statistics
+	 *            collects statistics about applied updates
 	 */
-	public StateMessageListener(SyncAppState<?> appState) {
+	public StateMessageListener(SyncAppState<?> appState,
+			ReplicationStatistics statistics) {
 		this.appState = appState;
+		this.statistics = statistics;
 		coreModule = appState.getModule(CoreModule.class);
 	}
 
 	public void messageReceived(MessageConnection source, Message m) {
 		UpdateMessage message = (UpdateMessage) m;
+		if (coreModule.deferIfPending(message.entityId, this, m)) {
+			return;
+		}
 		ConnectionInfo<?> connectionInfo = coreModule.getData(source);
 		DynamicEntityData data = coreModule.getEntityProvider().getData(
 				message.entityId);
@@ -107,14 +119,21 @@ public class StateMessageListener implements MessageListener<MessageConnection>
 					+ " which is no longer visible in that static context.");
 		}
 
+		UpdateSetStatistics st = null;
+		long start = 0;
+		if (statistics.isEnabled() && sed != null) {
+			st = statistics.get(sed, message.setId);
+			start = System.nanoTime();
+		}
+
 		DynamicMemberData[] dmd = data.getMemberData(sed);
 		InboundAwareEntity iae = null;
 		long lastTimestamp = 0;
 		if (message.setId != UpdateSetId.NO_SET
 				&& InboundAwareEntity.class.isInstance(data.getLocalInstance())
 				&& message.fieldIds.length > 0) {
-			lastTimestamp = ((DynamicUpdateData) dmd[message.fieldIds[0]])
-					.getLastTime();
+			int slot = sed.getDynamicSlot(message.fieldIds[0]);
+			lastTimestamp = ((DynamicUpdateData) dmd[slot]).getLastTime();
 			if (message.localTime < lastTimestamp) {
 				return;
 			}
@@ -124,8 +143,8 @@ public class StateMessageListener implements MessageListener<MessageConnection>
 					message.localTime);
 		}
 		for (int i = 0; i < message.fieldIds.length; i++) {
-			int fieldId = message.fieldIds[i];
-			((DynamicUpdateData) dmd[fieldId]).setFromRemote(
+			int slot = sed.getDynamicSlot(message.fieldIds[i]);
+			((DynamicUpdateData) dmd[slot]).setFromRemote(
 					message.fieldValues[i], message.localTime);
 		}
 		if (iae != null) {
@@ -133,5 +152,12 @@ public class StateMessageListener implements MessageListener<MessageConnection>
 					sed.getConnectedClass(), m.isReliable(), lastTimestamp,
 					message.localTime);
 		}
+		if (st != null) {
+			long time = System.nanoTime() - start;
+			st.messagesReceived++;
+			st.fieldsApplied += message.fieldIds.length;
+			st.applyTime += time;
+			st.applyTimes.record(time);
+		}
 	}
 }
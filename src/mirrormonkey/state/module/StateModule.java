@@ -37,20 +37,18 @@
 
 package mirrormonkey.state.module;
 
-import java.util.HashMap;
-import java.util.Map;
-
+import mirrormonkey.core.BatchedLifecycleListener;
 import mirrormonkey.core.InstanceInitializedEvent;
-import mirrormonkey.core.InstanceLifecycleListener;
 import mirrormonkey.core.InstanceRemovedEvent;
 import mirrormonkey.core.InstanceReplacedEvent;
+import mirrormonkey.core.LifecycleBatch;
 import mirrormonkey.core.module.CoreModule;
 import mirrormonkey.framework.SyncAppState;
-import mirrormonkey.framework.connection.ConnectionInfo;
-import mirrormonkey.framework.entity.StaticDataKey;
+import mirrormonkey.framework.entity.DynamicEntityData;
 import mirrormonkey.framework.entity.StaticEntityData;
-import mirrormonkey.framework.entity.SyncEntity;
 import mirrormonkey.framework.module.MirrorMonkeyModule;
+import mirrormonkey.state.SendRateController;
+import mirrormonkey.state.UpdateRelevanceProvider;
 import mirrormonkey.state.annotations.StateAnnotationPresets;
 import mirrormonkey.state.messages.UpdateMessage;
 
@@ -63,12 +61,13 @@ import com.jme3.network.serializing.Serializer;
  * 
  */
 public class StateModule extends MirrorMonkeyModule<SyncAppState<?>> implements
-		InstanceLifecycleListener {
+		BatchedLifecycleListener {
 
 	/**
-	 * Contains data about when to update which fields.
+	 * Contains data about when to update which fields, indexed by the handle
+	 * of the <tt>StaticEntityData</tt> it was created for.
 	 */
-	protected final Map<StaticDataKey, StaticUpdateData> staticData;
+	protected StaticUpdateData[] staticData;
 
 	/**
 	 * Contains data about when to update which fields.
@@ -80,6 +79,23 @@ public class StateModule extends MirrorMonkeyModule<SyncAppState<?>> implements
 	 */
 	protected long lastTime;
 
+	/**
+	 * Scales update frequencies per entity and connection, or <tt>null</tt> if
+	 * every update set is sent at full frequency.
+	 */
+	protected UpdateRelevanceProvider relevanceProvider;
+
+	/**
+	 * Adapts send rates to the quality of connections, or <tt>null</tt> if
+	 * send rates are not adapted.
+	 */
+	protected SendRateController rateController;
+
+	/**
+	 * Collects statistics about sent and received updates.
+	 */
+	protected final ReplicationStatistics statistics;
+
 	/**
 	 * Creates a new <tt>StateModule</tt> for a given <tt>SyncAppState</tt>.
 	 * 
@@ -94,11 +110,13 @@ public class StateModule extends MirrorMonkeyModule<SyncAppState<?>> implements
 		appState.getModule(CoreModule.class).getEntityProvider()
 				.parsePresetClass(StateAnnotationPresets.class);
 
-		staticData = new HashMap<StaticDataKey, StaticUpdateData>();
+		staticData = new StaticUpdateData[16];
+		statistics = new ReplicationStatistics();
 
 		queue = new UpdateQueue(this);
 		appState.getEventManager().addMessageListener(
-				new StateMessageListener(appState), UpdateMessage.class);
+				new StateMessageListener(appState, statistics),
+				UpdateMessage.class);
 		appState.getModule(CoreModule.class).getListenerConfiguration()
 				.addListener(this);
 		lastTime = appState.getSyncTime();
@@ -118,66 +136,29 @@ public class StateModule extends MirrorMonkeyModule<SyncAppState<?>> implements
 	 *         <tt>create</tt> was set to <tt>false</tt>
 	 */
 	private StaticUpdateData get(StaticEntityData sd, boolean create) {
-		StaticDataKey key = new StaticDataKey(sd.getLocalClass(),
-				sd.getConnectedClass());
-		StaticUpdateData sud = staticData.get(key);
+		int handle = sd.getHandle();
+		if (handle < 0) {
+			throw new IllegalArgumentException(
+					"Static data has not been added to the entity provider: "
+							+ sd);
+		}
+		if (handle >= staticData.length) {
+			if (!create) {
+				return null;
+			}
+			StaticUpdateData[] grown = new StaticUpdateData[Math.max(
+					handle + 1, staticData.length * 2)];
+			System.arraycopy(staticData, 0, grown, 0, staticData.length);
+			staticData = grown;
+		}
+		StaticUpdateData sud = staticData[handle];
 		if (sud == null && create) {
 			sud = new StaticUpdateData(getAppState(), sd, queue);
-			staticData.put(key, sud);
+			staticData[handle] = sud;
 		}
 		return sud;
 	}
 
-	/**
-	 * Starts updating an entity for a given connection.
-	 * 
-	 * @param entity
-	 *            local instance of the entity for which update messages should
-	 *            be created
-	 * @param info
-	 *            data about the connection that update messages should be sent
-	 *            to
-	 */
-	protected void add(SyncEntity entity, ConnectionInfo<?> info) {
-		StaticEntityData sd = entity.getData().getActiveStaticData(
-				info.getConnection());
-		get(sd, true).add(entity.getData(), info);
-	}
-
-	/**
-	 * Stops updating an entity for a given connection.
-	 * 
-	 * @param entity
-	 *            local instance of the entity that should no longer be
-	 *            synchronized with the connection
-	 * @param info
-	 *            data about the connection for which <tt>entity</tt> should no
-	 *            longer be synchronized with its connected instance
-	 */
-	private void remove(SyncEntity entity, ConnectionInfo<?> info) {
-		remove(entity.getData().getId(), info, entity.getData()
-				.getActiveStaticData(info.getConnection()));
-	}
-
-	/**
-	 * Stops synchronizing an entity with a given connection.
-	 * 
-	 * @param entityId
-	 *            unique ID of the entity
-	 * @param info
-	 *            data about the connection that the entity should no longer be
-	 *            synchronized with
-	 * @param staticData
-	 *            context in which the entity was synchronized
-	 */
-	protected void remove(Integer entityId, ConnectionInfo<?> info,
-			StaticEntityData staticData) {
-		StaticUpdateData d = get(staticData, false);
-		if (d != null) {
-			get(staticData, false).remove(entityId, info);
-		}
-	}
-
 	@Override
 	public void update(float tpf) {
 		update(getAppState().getSyncTime());
@@ -194,26 +175,106 @@ public class StateModule extends MirrorMonkeyModule<SyncAppState<?>> implements
 		lastTime = newTime;
 	}
 
-	public void instanceInitialized(InstanceInitializedEvent e) {
-		add(e.instance, e.connection);
+	/**
+	 * @return the <tt>UpdateRelevanceProvider</tt> that scales update
+	 *         frequencies per entity and connection, or <tt>null</tt> if every
+	 *         update set is sent at full frequency
+	 */
+	public UpdateRelevanceProvider getRelevanceProvider() {
+		return relevanceProvider;
 	}
 
-	public void instanceReplaced(InstanceReplacedEvent e) {
-		remove(e.dynamicData.getId(), e.connection, e.oldStaticData);
+	/**
+	 * Sets the <tt>UpdateRelevanceProvider</tt> that scales update frequencies
+	 * per entity and connection.
+	 * 
+	 * @param relevanceProvider
+	 *            new provider, or <tt>null</tt> to send every update set at
+	 *            full frequency
+	 */
+	public void setRelevanceProvider(UpdateRelevanceProvider relevanceProvider) {
+		this.relevanceProvider = relevanceProvider;
 	}
 
-	public void instanceReplacing(InstanceReplacedEvent e) {
-		add(e.newInstance, e.connection);
+	/**
+	 * @return the <tt>SendRateController</tt> that adapts send rates to the
+	 *         quality of connections, or <tt>null</tt> if send rates are not
+	 *         adapted
+	 */
+	public SendRateController getRateController() {
+		return rateController;
 	}
 
-	public void instanceRemoved(InstanceRemovedEvent e) {
-		remove(e.instance, e.connection);
+	/**
+	 * Sets the <tt>SendRateController</tt> that adapts send rates to the
+	 * quality of connections, for example a
+	 * <tt>ConnectionQualityRateController</tt>.
+	 * 
+	 * @param rateController
+	 *            new controller, or <tt>null</tt> to stop adapting send rates
+	 */
+	public void setRateController(SendRateController rateController) {
+		this.rateController = rateController;
 	}
 
-	public int getSortingOrder() {
-		return FRAMEWORK_MAX_SORTING_ORDER;
+	/**
+	 * Returns the statistics about sent and received updates. Collecting
+	 * statistics must be enabled using <tt>setEnabled</tt> before any values
+	 * are collected.
+	 * 
+	 * @return the <tt>ReplicationStatistics</tt> of this module
+	 */
+	public ReplicationStatistics getStatistics() {
+		return statistics;
 	}
 
-	public void setSortingOrder(int sortingOrder) {
+	public void instancesChanged(LifecycleBatch batch) {
+		for (LifecycleBatch.Group g : batch.getGroups()) {
+			if (g.getStaticData() == null) {
+				continue;
+			}
+			StaticUpdateData sud = null;
+			for (int i = 0; i < g.size(); i++) {
+				DynamicEntityData data;
+				boolean add;
+				boolean revived = false;
+				switch (g.getKind(i)) {
+				case INITIALIZED:
+					InstanceInitializedEvent init = (InstanceInitializedEvent) g
+							.getEvent(i);
+					data = init.dynamicData;
+					add = true;
+					revived = init.revived;
+					break;
+				case REPLACING:
+					data = ((InstanceReplacedEvent) g.getEvent(i)).dynamicData;
+					add = true;
+					break;
+				case REPLACED:
+					data = ((InstanceReplacedEvent) g.getEvent(i)).dynamicData;
+					add = false;
+					break;
+				default:
+					data = ((InstanceRemovedEvent) g.getEvent(i)).dynamicData;
+					add = false;
+				}
+				if (sud == null) {
+					sud = get(g.getStaticData(), add);
+					if (sud == null) {
+						continue;
+					}
+				}
+				int id = g.getEntityId(i);
+				if (add) {
+					sud.add(id, data, g.getConnection());
+					if (revived) {
+						sud.markStale(id, g.getConnection());
+					}
+				} else {
+					sud.remove(id, g.getConnection());
+				}
+			}
+		}
 	}
+
 }
@@ -39,6 +39,7 @@ package mirrormonkey.state.module;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Map;
 
@@ -48,8 +49,11 @@ import mirrormonkey.framework.entity.DynamicEntityData;
 import mirrormonkey.framework.entity.StaticEntityData;
 import mirrormonkey.framework.member.DynamicMemberData;
 import mirrormonkey.framework.member.StaticMemberData;
+import mirrormonkey.state.SendRateController;
+import mirrormonkey.state.UpdateRelevanceProvider;
 import mirrormonkey.state.annotations.UpdateSetId;
 import mirrormonkey.state.member.StaticUpdateMemberData;
+import mirrormonkey.util.IntMap;
 
 /**
  * Contains data on how to synchronize the state of two entity instances in a
@@ -82,9 +86,21 @@ public class StaticUpdateData {
 	private final UpdateSet[] sets;
 
 	/**
-	 * Entities that are currently synchronized in the given context.
+	 * Entities that are currently synchronized in the given context. Only the
+	 * first <tt>activeCount</tt> entries are used. Removed entries are
+	 * replaced by the last entry, so iterating stays sequential.
 	 */
-	private final Map<Integer, EntityReg> activeEntities;
+	private EntityReg[] activeEntities;
+
+	/**
+	 * Number of used entries in <tt>activeEntities</tt>.
+	 */
+	private int activeCount;
+
+	/**
+	 * Maps entity IDs to their entries in <tt>activeEntities</tt>.
+	 */
+	private final IntMap<EntityReg> activeById;
 
 	/**
 	 * Creates a new <tt>StaticUpdateData</tt> that will determine how to update
@@ -104,13 +120,17 @@ public class StaticUpdateData {
 		this.staticData = staticData;
 		this.queue = queue;
 		sets = extractSets(this, queue.module.lastTime);
-		activeEntities = new HashMap<Integer, EntityReg>();
+		activeEntities = new EntityReg[16];
+		activeById = new IntMap<EntityReg>();
 	}
 
 	/**
 	 * Starts synchronizing an entity with a connection in the represented
 	 * static context.
 	 * 
+	 * @param entityId
+	 *            ID of the entity when it became visible to
+	 *            <tt>connection</tt>
 	 * @param entity
 	 *            dynamic data about the entity that should be synchronized
 	 * @param connection
@@ -118,18 +138,25 @@ public class StaticUpdateData {
 	 *            synchronized to
 	 */
 	@SuppressWarnings("synthetic-access")
-	public void add(DynamicEntityData entity,
+	public void add(int entityId, DynamicEntityData entity,
 			@SuppressWarnings("unused") ConnectionInfo<?> connection) {
-		if (activeEntities.isEmpty()) {
+		if (activeCount == 0) {
 			for (UpdateSet h : sets) {
 				queue.addSet(h);
 			}
 		}
 
-		EntityReg reg = activeEntities.get(entity.getId());
+		EntityReg reg = activeById.get(entityId);
 		if (reg == null) {
 			reg = new EntityReg(entity);
-			activeEntities.put(entity.getId(), reg);
+			if (activeCount == activeEntities.length) {
+				EntityReg[] grown = new EntityReg[activeCount * 2];
+				System.arraycopy(activeEntities, 0, grown, 0, activeCount);
+				activeEntities = grown;
+			}
+			reg.slot = activeCount;
+			activeEntities[activeCount++] = reg;
+			activeById.put(entityId, reg);
 		}
 		reg.count++;
 	}
@@ -146,14 +173,21 @@ public class StaticUpdateData {
 	 *            synchronized to in the represented static context
 	 */
 	@SuppressWarnings("synthetic-access")
-	public void remove(Integer entityId,
-			@SuppressWarnings("unused") ConnectionInfo<?> connection) {
-		EntityReg reg = activeEntities.get(entityId);
+	public void remove(int entityId, ConnectionInfo<?> connection) {
+		EntityReg reg = activeById.get(entityId);
 		if (--reg.count == 0) {
-			activeEntities.remove(entityId);
+			activeById.remove(entityId);
+			EntityReg last = activeEntities[--activeCount];
+			activeEntities[reg.slot] = last;
+			last.slot = reg.slot;
+			activeEntities[activeCount] = null;
+		} else if (reg.stale != null) {
+			for (Collection<ConnectionInfo<?>> c : reg.stale.values()) {
+				c.remove(connection);
+			}
 		}
 
-		if (activeEntities.isEmpty()) {
+		if (activeCount == 0) {
 			for (UpdateSet h : sets) {
 				queue.removeSet(h);
 			}
@@ -161,12 +195,70 @@ public class StaticUpdateData {
 	}
 
 	/**
-	 * @return a collection containing all entities that are currently
-	 *         synchronized to at least one client in the represented static
-	 *         context
+	 * Marks every update set of an entity as skipped for a connection, so
+	 * that every field is sent to the connection on the next update. Used
+	 * when a dormant client-local instance was revived and may hold outdated
+	 * values.
+	 * 
+	 * @param entityId
+	 *            ID of an entity that is synchronized in the represented static
+	 *            context
+	 * @param connection
+	 *            the connection that should receive every field
+	 */
+	public void markStale(int entityId, ConnectionInfo<?> connection) {
+		EntityReg reg = activeById.get(entityId);
+		if (reg == null) {
+			return;
+		}
+		for (UpdateSet h : sets) {
+			reg.setStale(h, connection, true);
+		}
+	}
+
+	/**
+	 * @return number of entities that are currently synchronized to at least
+	 *         one client in the represented static context
 	 */
-	protected final Collection<EntityReg> getActiveEntities() {
-		return activeEntities.values();
+	protected final int getActiveEntityCount() {
+		return activeCount;
+	}
+
+	/**
+	 * Fetches an entity that is currently synchronized to at least one client
+	 * in the represented static context. Indices of entities change when
+	 * other entities are removed.
+	 * 
+	 * @param i
+	 *            index of the entity, smaller than
+	 *            <tt>getActiveEntityCount()</tt>
+	 * @return the entity at index <tt>i</tt>
+	 */
+	protected final EntityReg getActiveEntity(int i) {
+		return activeEntities[i];
+	}
+
+	/**
+	 * @return the <tt>UpdateRelevanceProvider</tt> currently set for the
+	 *         <tt>StateModule</tt>, or <tt>null</tt> if there is none
+	 */
+	protected final UpdateRelevanceProvider getRelevanceProvider() {
+		return queue.module.relevanceProvider;
+	}
+
+	/**
+	 * @return the <tt>SendRateController</tt> currently set for the
+	 *         <tt>StateModule</tt>, or <tt>null</tt> if there is none
+	 */
+	protected final SendRateController getRateController() {
+		return queue.module.rateController;
+	}
+
+	/**
+	 * @return the <tt>ReplicationStatistics</tt> of the <tt>StateModule</tt>
+	 */
+	protected final ReplicationStatistics getStatistics() {
+		return queue.module.statistics;
 	}
 
 	/**
@@ -194,6 +286,25 @@ public class StaticUpdateData {
 		 */
 		private int count;
 
+		/**
+		 * Index of this <tt>EntityReg</tt> in <tt>activeEntities</tt>.
+		 */
+		private int slot;
+
+		/**
+		 * Connections per update set that skipped at least one update
+		 * containing changed values because of their update divider. Created
+		 * on demand.
+		 */
+		private Map<UpdateSet, Collection<ConnectionInfo<?>>> stale;
+
+		/**
+		 * Number of additional update messages that the value of every member
+		 * must still be sent with, by update set index and member index.
+		 * Created on demand.
+		 */
+		private int[][] resend;
+
 		/**
 		 * Creates a new <tt>EntityReg</tt> for a given entity.
 		 * 
@@ -206,6 +317,95 @@ public class StaticUpdateData {
 			count = 0;
 		}
 
+		/**
+		 * Returns the redundancy counters of this entity for an update set.
+		 * 
+		 * @param set
+		 *            index of the update set
+		 * @param size
+		 *            number of members in the update set
+		 * @return array containing the number of additional update messages
+		 *         that the value of every member must still be sent with
+		 */
+		public int[] getResendCounters(int set, int size) {
+			if (resend == null) {
+				resend = new int[sets.length][];
+			}
+			if (resend[set] == null) {
+				resend[set] = new int[size];
+			}
+			return resend[set];
+		}
+
+		/**
+		 * Checks whether changed values of an update set were skipped for a
+		 * connection.
+		 * 
+		 * @param set
+		 *            the update set
+		 * @param connection
+		 *            the connection
+		 * @return <tt>true</tt> if every field of <tt>set</tt> must be sent
+		 *         to <tt>connection</tt> on its next update, <tt>false</tt>
+		 *         otherwise
+		 */
+		public boolean isStale(UpdateSet set, ConnectionInfo<?> connection) {
+			if (stale == null) {
+				return false;
+			}
+			Collection<ConnectionInfo<?>> c = stale.get(set);
+			return c != null && c.contains(connection);
+		}
+
+		/**
+		 * Checks whether changed values of an update set were skipped for any
+		 * connection.
+		 * 
+		 * @param set
+		 *            the update set
+		 * @return <tt>true</tt> if every field of <tt>set</tt> must be sent
+		 *         to at least one connection on its next update,
+		 *         <tt>false</tt> otherwise
+		 */
+		public boolean hasStale(UpdateSet set) {
+			if (stale == null) {
+				return false;
+			}
+			Collection<ConnectionInfo<?>> c = stale.get(set);
+			return c != null && !c.isEmpty();
+		}
+
+		/**
+		 * Marks or unmarks an update set as skipped for a connection.
+		 * 
+		 * @param set
+		 *            the update set
+		 * @param connection
+		 *            the connection
+		 * @param isStale
+		 *            <tt>true</tt> if changed values were skipped,
+		 *            <tt>false</tt> if the connection received every field
+		 */
+		public void setStale(UpdateSet set, ConnectionInfo<?> connection,
+				boolean isStale) {
+			if (isStale) {
+				if (stale == null) {
+					stale = new HashMap<UpdateSet, Collection<ConnectionInfo<?>>>();
+				}
+				Collection<ConnectionInfo<?>> c = stale.get(set);
+				if (c == null) {
+					c = new HashSet<ConnectionInfo<?>>();
+					stale.put(set, c);
+				}
+				c.add(connection);
+			} else if (stale != null) {
+				Collection<ConnectionInfo<?>> c = stale.get(set);
+				if (c != null) {
+					c.remove(connection);
+				}
+			}
+		}
+
 	}
 
 	/**
@@ -232,6 +432,16 @@ public class StaticUpdateData {
 		 */
 		private final long freq;
 
+		/**
+		 * Highest priority declared by any member.
+		 */
+		private int priority;
+
+		/**
+		 * Highest redundancy declared by any member.
+		 */
+		private int redundancy;
+
 		/**
 		 * Members that declare this update set's ID.
 		 */
@@ -252,6 +462,8 @@ public class StaticUpdateData {
 			this.id = id;
 			this.reliable = reliable;
 			this.freq = freq;
+			priority = Integer.MIN_VALUE;
+			redundancy = 0;
 			members = new LinkedList<StaticUpdateMemberData>();
 		}
 
@@ -269,6 +481,8 @@ public class StaticUpdateData {
 						+ reliable + " and frequency=" + freq);
 			}
 			members.add(memberData);
+			priority = Math.max(priority, memberData.priority);
+			redundancy = Math.max(redundancy, memberData.redundancy);
 		}
 
 		/**
@@ -276,19 +490,22 @@ public class StaticUpdateData {
 		 * 
 		 * @param staticData
 		 *            data about the static state synchronization context
+		 * @param index
+		 *            index of the new set in the context's set array
 		 * @param currentTime
 		 *            local sync time on the current frame
 		 * @return a new instance of <tt>UpdateSet</tt> that corresponds to the
 		 *         data that this <tt>TempUpdateSet</tt> gathered
 		 */
 		public final UpdateSet extractSet(StaticUpdateData staticData,
-				long currentTime) {
+				int index, long currentTime) {
 			return new UpdateSet(
 					staticData,
+					index,
 					reliable,
 					id,
 					members.toArray(new StaticUpdateMemberData[members.size()]),
-					freq, currentTime);
+					freq, priority, redundancy, currentTime);
 		}
 	}
 
@@ -324,7 +541,8 @@ public class StaticUpdateData {
 		UpdateSet[] val = new UpdateSet[tempSets.values().size()];
 		int i = 0;
 		for (TempUpdateSet tus : tempSets.values()) {
-			val[i++] = tus.extractSet(sd, time);
+			val[i] = tus.extractSet(sd, i, time);
+			i++;
 		}
 		return val;
 	}
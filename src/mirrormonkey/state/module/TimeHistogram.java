@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2011, 2012, Philipp Christian Loewner
+ * All rights reserved.
+ * 
+ * Disclaimer:
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * This software uses parts of:
+ * jMonkeyEngine
+ * Copyright (c) 2009-2010 jMonkeyEngine
+ * All rights reserved.
+ * 
+ * For jMonkeyEngine, the same disclaimer as printed above applies.
+ */
+
+package mirrormonkey.state.module;
+
+/**
+ * Histogram of durations with exponentially growing buckets.
+ * 
+ * Bucket <tt>0</tt> counts durations shorter than one microsecond. Every
+ * bucket <tt>i &gt; 0</tt> counts durations from <tt>2^(i-1)</tt> up to (but
+ * excluding) <tt>2^i</tt> microseconds. The last bucket additionally counts
+ * every longer duration.
+ * 
+ * @author Philipp Christian Loewner
+ * 
+ */
+public final class TimeHistogram {
+
+	/**
+	 * Number of buckets. The last bucket starts at about 1 second.
+	 */
+	public static final int BUCKET_COUNT = 22;
+
+	/**
+	 * Number of recorded durations per bucket.
+	 */
+	private final long[] buckets;
+
+	/**
+	 * Creates a new, empty <tt>TimeHistogram</tt>.
+	 */
+	public TimeHistogram() {
+		buckets = new long[BUCKET_COUNT];
+	}
+
+	/**
+	 * Creates a copy of another <tt>TimeHistogram</tt>.
+	 * 
+	 * @param other
+	 *            the histogram to copy
+	 */
+	public TimeHistogram(TimeHistogram other) {
+		buckets = other.buckets.clone();
+	}
+
+	/**
+	 * Records a duration.
+	 * 
+	 * @param nanos
+	 *            the duration, in nanoseconds
+	 */
+	public void record(long nanos) {
+		long micros = nanos / 1000;
+		int bucket = 0;
+		while (micros > 0 && bucket < BUCKET_COUNT - 1) {
+			micros >>>= 1;
+			bucket++;
+		}
+		buckets[bucket]++;
+	}
+
+	/**
+	 * @param bucket
+	 *            index of the bucket
+	 * @return number of durations recorded in <tt>bucket</tt>
+	 */
+	public long getCount(int bucket) {
+		return buckets[bucket];
+	}
+
+	/**
+	 * @param bucket
+	 *            index of the bucket
+	 * @return smallest duration counted in <tt>bucket</tt>, in microseconds
+	 */
+	public static long getLowerBound(int bucket) {
+		return bucket == 0 ? 0 : 1L << (bucket - 1);
+	}
+
+	/**
+	 * @return total number of recorded durations
+	 */
+	public long getTotalCount() {
+		long total = 0;
+		for (long l : buckets) {
+			total += l;
+		}
+		return total;
+	}
+
+	/**
+	 * Removes every recorded duration.
+	 */
+	public void clear() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = 0;
+		}
+	}
+
+}
@@ -41,7 +41,11 @@ import java.util.Collection;
 import java.util.LinkedList;
 
 import mirrormonkey.framework.connection.ConnectionInfo;
+import mirrormonkey.framework.entity.SyncEntity;
 import mirrormonkey.state.OutboundAwareEntity;
+import mirrormonkey.state.SendRateController;
+import mirrormonkey.state.UpdateRelevanceProvider;
+import mirrormonkey.state.UpdateVisibilityRule;
 import mirrormonkey.state.annotations.UpdateSetId;
 import mirrormonkey.state.member.DynamicUpdateData;
 import mirrormonkey.state.member.StaticUpdateMemberData;
@@ -62,6 +66,12 @@ public class UpdateSet implements Comparable<UpdateSet> {
 	 */
 	private final StaticUpdateData staticData;
 
+	/**
+	 * Index of the represented update set in its static synchronization
+	 * context.
+	 */
+	private final int index;
+
 	/**
 	 * Determines whether reliable transfer should be used for the represented
 	 * update set.
@@ -78,27 +88,97 @@ public class UpdateSet implements Comparable<UpdateSet> {
 	 */
 	private final StaticUpdateMemberData[] members;
 
+	/**
+	 * Index of the dynamic data of every member of this set in the dynamic
+	 * member data of an entity, in the same order as <tt>members</tt>.
+	 */
+	private final int[] slots;
+
 	/**
 	 * Time between updates, in nanoseconds.
 	 */
 	private final long freq;
 
+	/**
+	 * Highest priority declared by any member of the represented set.
+	 */
+	private final int priority;
+
+	/**
+	 * Number of additional update messages that changed values are sent with.
+	 * Always <tt>0</tt> for reliable sets.
+	 */
+	private final int redundancy;
+
+	/**
+	 * Statistics about the represented set, updated if collecting statistics
+	 * is enabled.
+	 */
+	private final UpdateSetStatistics statistics;
+
+	/**
+	 * <tt>true</tt> if at least one member of the represented set defines an
+	 * <tt>UpdateVisibilityRule</tt>, meaning that update messages have to be
+	 * created per connection.
+	 */
+	private final boolean filtered;
+
 	/**
 	 * Contains dynamic data for updated fields during calls to
 	 * <tt>performUpdate</tt>.
 	 */
 	private final Collection<DynamicUpdateData> cachedUpdates;
 
+	/**
+	 * Used during calls to <tt>updatePerConnection</tt>; contains whether the
+	 * value of a member must be sent because it changed (recently), by index
+	 * in <tt>members</tt>.
+	 */
+	private final boolean[] changed;
+
+	/**
+	 * Used during calls to <tt>updatePerConnection</tt>; contains whether the
+	 * value of a member has already been read, by index in <tt>members</tt>.
+	 */
+	private final boolean[] read;
+
+	/**
+	 * Used during calls to <tt>updatePerConnection</tt>; contains values that
+	 * have already been read, by index in <tt>members</tt>.
+	 */
+	private final Object[] values;
+
+	/**
+	 * Used during calls to <tt>updatePerConnection</tt>; contains the IDs of
+	 * the fields sent to the current connection.
+	 */
+	private final int[] ids;
+
+	/**
+	 * Used during calls to <tt>updatePerConnection</tt>; contains the values
+	 * of the fields sent to the current connection.
+	 */
+	private final Object[] sentValues;
+
 	/**
 	 * Local sync time at which the next update will be performed.
 	 */
 	private long due;
 
+	/**
+	 * Number of updates that have been performed for the represented set.
+	 * Used to distribute updates with update dividers greater than <tt>1</tt>
+	 * evenly across entities.
+	 */
+	private long tick;
+
 	/**
 	 * Creates a new <tt>UpdateSet</tt>.
 	 * 
 	 * @param staticData
 	 *            static state sync context
+	 * @param index
+	 *            index of the set in <tt>staticData</tt>
 	 * @param reliable
 	 *            <tt>true</tt> if reliable transfer should be used to send
 	 *            update messages, <tt>false</tt> if unreliable transfer should
@@ -109,18 +189,43 @@ public class UpdateSet implements Comparable<UpdateSet> {
 	 *            these will be updated
 	 * @param freq
 	 *            time between updates in nanoseconds
+	 * @param priority
+	 *            highest priority declared by any member
+	 * @param redundancy
+	 *            number of additional update messages that changed values are
+	 *            sent with
 	 * @param currentTime
 	 *            local sync time in the current frame
 	 */
-	public UpdateSet(StaticUpdateData staticData, boolean reliable, int setId,
-			StaticUpdateMemberData[] members, long freq, long currentTime) {
+	public UpdateSet(StaticUpdateData staticData, int index, boolean reliable,
+			int setId, StaticUpdateMemberData[] members, long freq,
+			int priority, int redundancy, long currentTime) {
 		this.staticData = staticData;
+		this.index = index;
 		this.reliable = reliable;
 		this.setId = setId;
 		this.members = members;
 		this.freq = freq;
+		this.priority = priority;
+		this.redundancy = reliable ? 0 : redundancy;
 		this.due = currentTime;
 		cachedUpdates = new LinkedList<DynamicUpdateData>();
+		changed = new boolean[members.length];
+		read = new boolean[members.length];
+		values = new Object[members.length];
+		ids = new int[members.length];
+		sentValues = new Object[members.length];
+		slots = new int[members.length];
+		for (int i = 0; i < members.length; i++) {
+			slots[i] = staticData.staticData.getDynamicSlot(members[i].id);
+		}
+		boolean filtered = false;
+		for (StaticUpdateMemberData sumd : members) {
+			filtered |= sumd.visibility != null;
+		}
+		this.filtered = filtered;
+		statistics = staticData.getStatistics().get(staticData.staticData,
+				setId);
 	}
 
 	/**
@@ -160,14 +265,37 @@ public class UpdateSet implements Comparable<UpdateSet> {
 	 */
 	public void performUpdate(long newTime,
 			Collection<DynamicUpdateData> updated) {
-		for (EntityReg e : staticData.getActiveEntities()) {
+		UpdateRelevanceProvider relevance = staticData.getRelevanceProvider();
+		SendRateController rates = staticData.getRateController();
+		ReplicationStatistics rs = staticData.getStatistics();
+		UpdateSetStatistics st = rs.isEnabled() ? statistics : null;
+		long start = 0;
+		if (st != null) {
+			start = System.nanoTime();
+			st.updates++;
+		}
+		for (int n = 0; n < staticData.getActiveEntityCount(); n++) {
+			EntityReg e = staticData.getActiveEntity(n);
+			if (filtered || relevance != null || rates != null
+					|| e.hasStale(this)) {
+				updatePerConnection(e, relevance, rates, st, updated);
+				continue;
+			}
+			long detectionStart = 0;
+			if (st != null) {
+				detectionStart = System.nanoTime();
+			}
 			cachedUpdates.clear();
-			for (StaticUpdateMemberData sumd : members) {
-				DynamicUpdateData dud = (DynamicUpdateData) e.dynamicData[sumd.id];
-				if (dud.isChanged()) {
+			for (int i = 0; i < members.length; i++) {
+				DynamicUpdateData dud = (DynamicUpdateData) e.dynamicData[slots[i]];
+				if (mustSend(e, i, dud)) {
 					cachedUpdates.add(dud);
 				}
 			}
+			if (st != null) {
+				st.detectionTime += System.nanoTime() - detectionStart;
+				st.entitiesScanned++;
+			}
 			if (!cachedUpdates.isEmpty()) {
 				OutboundAwareEntity oae = null;
 				if (OutboundAwareEntity.class.isInstance(e.entity
@@ -187,9 +315,18 @@ public class UpdateSet implements Comparable<UpdateSet> {
 					updated.add(dud);
 					i++;
 				}
+				int bytes = 0;
+				if (st != null) {
+					st.fieldsChanged += cachedUpdates.size();
+					bytes = rs.measure(um);
+				}
 				for (ConnectionInfo<?> ci : e.entity
 						.getActiveConnections(staticData.staticData)) {
 					ci.send(um);
+					if (st != null) {
+						st.messagesSent++;
+						st.bytesSent += bytes;
+					}
 				}
 				if (oae != null) {
 					oae.afterOutbound(staticData.appState, setId,
@@ -197,7 +334,173 @@ public class UpdateSet implements Comparable<UpdateSet> {
 				}
 			}
 		}
+		tick++;
 		reset(newTime);
+		if (st != null) {
+			st.updateTimes.record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Creates and sends one update message per connection for an entity. Used
+	 * instead of sharing one message between every connection if members of
+	 * the represented set define <tt>UpdateVisibilityRules</tt>, if update
+	 * frequencies are scaled by an <tt>UpdateRelevanceProvider</tt> or a
+	 * <tt>SendRateController</tt>, or if some connection must receive every
+	 * field because it is stale.
+	 * 
+	 * Every value is read at most once, and only if it is actually sent to at
+	 * least one connection.
+	 * 
+	 * @param e
+	 *            the entity to update
+	 * @param relevance
+	 *            scales update frequencies per connection, may be
+	 *            <tt>null</tt>
+	 * @param rates
+	 *            adapts update frequencies to connection quality, may be
+	 *            <tt>null</tt>
+	 * @param st
+	 *            statistics to update, or <tt>null</tt> if collecting
+	 *            statistics is disabled
+	 * @param updated
+	 *            changed fields will be added to this collection so we can
+	 *            perform collective reset on value tracking
+	 */
+	protected void updatePerConnection(EntityReg e,
+			UpdateRelevanceProvider relevance, SendRateController rates,
+			UpdateSetStatistics st, Collection<DynamicUpdateData> updated) {
+		long detectionStart = 0;
+		if (st != null) {
+			detectionStart = System.nanoTime();
+		}
+		boolean anyChanged = false;
+		for (int i = 0; i < members.length; i++) {
+			DynamicUpdateData dud = (DynamicUpdateData) e.dynamicData[slots[i]];
+			changed[i] = mustSend(e, i, dud);
+			read[i] = false;
+			if (changed[i]) {
+				anyChanged = true;
+				updated.add(dud);
+			}
+		}
+		if (st != null) {
+			st.detectionTime += System.nanoTime() - detectionStart;
+			st.entitiesScanned++;
+		}
+
+		SyncEntity instance = e.entity.getLocalInstance();
+		boolean outbound = OutboundAwareEntity.class.isInstance(instance)
+				&& setId != UpdateSetId.NO_SET;
+		boolean notified = false;
+
+		for (ConnectionInfo<?> ci : e.entity
+				.getActiveConnections(staticData.staticData)) {
+			boolean stale = e.isStale(this, ci);
+			if (!anyChanged && !stale) {
+				continue;
+			}
+			if (relevance != null || rates != null) {
+				int divider = 1;
+				if (relevance != null) {
+					divider = Math.max(1,
+							relevance.getUpdateDivider(instance, ci));
+				}
+				if (rates != null) {
+					divider *= Math.max(1, rates.getRateDivider(ci, priority));
+				}
+				if (divider > 1 && (tick + e.entity.getId()) % divider != 0) {
+					if (anyChanged) {
+						e.setStale(this, ci, true);
+					}
+					continue;
+				}
+			}
+			if (stale) {
+				e.setStale(this, ci, false);
+			}
+
+			int count = 0;
+			for (int i = 0; i < members.length; i++) {
+				if (!changed[i] && !stale) {
+					continue;
+				}
+				UpdateVisibilityRule rule = members[i].visibility;
+				if (rule != null && !rule.isVisible(instance, ci)) {
+					continue;
+				}
+				if (!read[i]) {
+					if (outbound && !notified) {
+						((OutboundAwareEntity) instance).beforeOutbound(
+								staticData.appState, setId,
+								staticData.staticData.getConnectedClass(),
+								reliable);
+						notified = true;
+					}
+					values[i] = ((DynamicUpdateData) e.dynamicData[slots[i]])
+							.getValue();
+					read[i] = true;
+					if (st != null) {
+						st.fieldsChanged++;
+					}
+				}
+				ids[count] = members[i].id;
+				sentValues[count] = values[i];
+				count++;
+			}
+			if (count == 0) {
+				continue;
+			}
+			UpdateMessage um = new UpdateMessage(
+					staticData.appState.getSyncTime(), reliable,
+					e.entity.getId(), setId, new int[count], new Object[count]);
+			System.arraycopy(ids, 0, um.fieldIds, 0, count);
+			System.arraycopy(sentValues, 0, um.fieldValues, 0, count);
+			ci.send(um);
+			if (st != null) {
+				st.messagesSent++;
+				st.bytesSent += staticData.getStatistics().measure(um);
+			}
+		}
+
+		for (int i = 0; i < members.length; i++) {
+			values[i] = null;
+			sentValues[i] = null;
+		}
+		if (notified) {
+			((OutboundAwareEntity) instance).afterOutbound(staticData.appState,
+					setId, staticData.staticData.getConnectedClass(), reliable);
+		}
+	}
+
+	/**
+	 * Checks whether the value of a member must be sent in the current update,
+	 * either because it changed or because it changed recently and redundant
+	 * transmission is used.
+	 * 
+	 * @param e
+	 *            the entity that is updated
+	 * @param i
+	 *            index of the member in <tt>members</tt>
+	 * @param dud
+	 *            dynamic data of the member
+	 * @return <tt>true</tt> if the value must be sent, <tt>false</tt>
+	 *         otherwise
+	 */
+	private boolean mustSend(EntityReg e, int i, DynamicUpdateData dud) {
+		if (redundancy == 0) {
+			return dud.isChanged();
+		}
+		int[] resend = e.getResendCounters(index, members.length);
+		if (dud.isChanged()) {
+			resend[i] = redundancy;
+			return true;
+		}
+		if (resend[i] > 0) {
+			resend[i]--;
+			return true;
+		}
+		return false;
 	}
 
 	public int compareTo(UpdateSet o) {
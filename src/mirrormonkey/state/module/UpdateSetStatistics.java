@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2011, 2012, Philipp Christian Loewner
+ * All rights reserved.
+ * 
+ * Disclaimer:
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * This software uses parts of:
+ * jMonkeyEngine
+ * Copyright (c) 2009-2010 jMonkeyEngine
+ * All rights reserved.
+ * 
+ * For jMonkeyEngine, the same disclaimer as printed above applies.
+ */
+
+package mirrormonkey.state.module;
+
+/**
+ * Counters about the replication of a single update set in a single static
+ * synchronization context.
+ * 
+ * Instances returned by <tt>ReplicationStatistics.snapshot</tt> are copies that
+ * will not change any more. Outbound counters are only updated on the side
+ * that reads the values of the update set, inbound counters only on the side
+ * that writes them.
+ * 
+ * @author Philipp Christian Loewner
+ * 
+ */
+public final class UpdateSetStatistics {
+
+	/**
+	 * Local class of the static synchronization context.
+	 */
+	private final Class<?> localClass;
+
+	/**
+	 * Connected class of the static synchronization context.
+	 */
+	private final Class<?> connectedClass;
+
+	/**
+	 * ID of the update set.
+	 */
+	private final int setId;
+
+	/**
+	 * Number of times that the update set was due.
+	 */
+	long updates;
+
+	/**
+	 * Number of entities examined for changed values.
+	 */
+	long entitiesScanned;
+
+	/**
+	 * Number of field values that were read to be sent.
+	 */
+	long fieldsChanged;
+
+	/**
+	 * Number of update messages sent, counted once per connection.
+	 */
+	long messagesSent;
+
+	/**
+	 * Number of serialized bytes of sent update messages, counted once per
+	 * connection.
+	 */
+	long bytesSent;
+
+	/**
+	 * Time spent checking for changed values, in nanoseconds.
+	 */
+	long detectionTime;
+
+	/**
+	 * Durations of single updates of the whole update set.
+	 */
+	final TimeHistogram updateTimes;
+
+	/**
+	 * Number of update messages received.
+	 */
+	long messagesReceived;
+
+	/**
+	 * Number of field values written from received update messages.
+	 */
+	long fieldsApplied;
+
+	/**
+	 * Time spent applying received update messages, in nanoseconds.
+	 */
+	long applyTime;
+
+	/**
+	 * Durations of applying single received update messages.
+	 */
+	final TimeHistogram applyTimes;
+
+	/**
+	 * Creates new, empty <tt>UpdateSetStatistics</tt>.
+	 * 
+	 * @param localClass
+	 *            local class of the static synchronization context
+	 * @param connectedClass
+	 *            connected class of the static synchronization context
+	 * @param setId
+	 *            ID of the update set
+	 */
+	public UpdateSetStatistics(Class<?> localClass, Class<?> connectedClass,
+			int setId) {
+		this.localClass = localClass;
+		this.connectedClass = connectedClass;
+		this.setId = setId;
+		updateTimes = new TimeHistogram();
+		applyTimes = new TimeHistogram();
+	}
+
+	/**
+	 * Creates a copy of other <tt>UpdateSetStatistics</tt>.
+	 * 
+	 * @param other
+	 *            the statistics to copy
+	 */
+	public UpdateSetStatistics(UpdateSetStatistics other) {
+		localClass = other.localClass;
+		connectedClass = other.connectedClass;
+		setId = other.setId;
+		updates = other.updates;
+		entitiesScanned = other.entitiesScanned;
+		fieldsChanged = other.fieldsChanged;
+		messagesSent = other.messagesSent;
+		bytesSent = other.bytesSent;
+		detectionTime = other.detectionTime;
+		updateTimes = new TimeHistogram(other.updateTimes);
+		messagesReceived = other.messagesReceived;
+		fieldsApplied = other.fieldsApplied;
+		applyTime = other.applyTime;
+		applyTimes = new TimeHistogram(other.applyTimes);
+	}
+
+	/**
+	 * Resets every counter to <tt>0</tt>.
+	 */
+	void clear() {
+		updates = 0;
+		entitiesScanned = 0;
+		fieldsChanged = 0;
+		messagesSent = 0;
+		bytesSent = 0;
+		detectionTime = 0;
+		updateTimes.clear();
+		messagesReceived = 0;
+		fieldsApplied = 0;
+		applyTime = 0;
+		applyTimes.clear();
+	}
+
+	/**
+	 * @return local class of the static synchronization context
+	 */
+	public Class<?> getLocalClass() {
+		return localClass;
+	}
+
+	/**
+	 * @return connected class of the static synchronization context
+	 */
+	public Class<?> getConnectedClass() {
+		return connectedClass;
+	}
+
+	/**
+	 * @return ID of the update set
+	 */
+	public int getSetId() {
+		return setId;
+	}
+
+	/**
+	 * @return number of times that the update set was due
+	 */
+	public long getUpdates() {
+		return updates;
+	}
+
+	/**
+	 * @return number of entities examined for changed values
+	 */
+	public long getEntitiesScanned() {
+		return entitiesScanned;
+	}
+
+	/**
+	 * @return number of field values that were read to be sent
+	 */
+	public long getFieldsChanged() {
+		return fieldsChanged;
+	}
+
+	/**
+	 * @return number of update messages sent, counted once per connection
+	 */
+	public long getMessagesSent() {
+		return messagesSent;
+	}
+
+	/**
+	 * @return number of serialized bytes of sent update messages, counted once
+	 *         per connection and excluding transport overhead
+	 */
+	public long getBytesSent() {
+		return bytesSent;
+	}
+
+	/**
+	 * @return time spent checking for changed values, in nanoseconds
+	 */
+	public long getDetectionTime() {
+		return detectionTime;
+	}
+
+	/**
+	 * @return durations of single updates of the whole update set
+	 */
+	public TimeHistogram getUpdateTimes() {
+		return updateTimes;
+	}
+
+	/**
+	 * @return number of update messages received
+	 */
+	public long getMessagesReceived() {
+		return messagesReceived;
+	}
+
+	/**
+	 * @return number of field values written from received update messages
+	 */
+	public long getFieldsApplied() {
+		return fieldsApplied;
+	}
+
+	/**
+	 * @return time spent applying received update messages, in nanoseconds
+	 */
+	public long getApplyTime() {
+		return applyTime;
+	}
+
+	/**
+	 * @return durations of applying single received update messages
+	 */
+	public TimeHistogram getApplyTimes() {
+		return applyTimes;
+	}
+
+	@Override
+	public String toString() {
+		return "[UpdateSetStatistics local=" + localClass.getName()
+				+ ", connected=" + connectedClass.getName() + ", set="
+				+ setId + ", updates=" + updates + ", scanned="
+				+ entitiesScanned + ", changed=" + fieldsChanged
+				+ ", messagesSent=" + messagesSent + ", bytesSent="
+				+ bytesSent + ", messagesReceived=" + messagesReceived
+				+ ", fieldsApplied=" + fieldsApplied + "]";
+	}
+
+}
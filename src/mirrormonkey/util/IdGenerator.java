@@ -37,12 +37,24 @@
 
 package mirrormonkey.util;
 
-import java.util.Collection;
+import java.util.BitSet;
 import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Generates <tt>int</tt> values that are guaranteed to be unique.
  * 
+ * Released IDs are kept in a first-in-first-out free list and handed out again
+ * before new IDs are generated, so generating, reserving and releasing IDs all
+ * take constant time and the set of used IDs stays dense.
+ * 
+ * Optionally, the upper bits of every ID can be used as generation counter.
+ * Every time an ID is handed out again after being released, its generation
+ * is increased, so the new holder receives a different <tt>int</tt> than the
+ * previous one and stale references to the previous holder can be detected
+ * with <tt>isReserved</tt>. The lower bits (as returned by <tt>getIndex</tt>)
+ * stay the same and can be used to index dense arrays.
+ * 
  * @author Philipp Christian Loewner
  * 
  */
@@ -54,15 +66,76 @@ public class IdGenerator {
 	public static final int DEFAULT_FIRST_ID = 1;
 
 	/**
-	 * Contains every ID that is currently in use.
+	 * Initial capacity of the free list.
+	 */
+	private static final int INITIAL_FREE_CAPACITY = 16;
+
+	/**
+	 * First index that is tracked in <tt>reservedSlots</tt>.
+	 */
+	private final int firstId;
+
+	/**
+	 * Number of upper bits used as generation counter, 0 if generations are
+	 * disabled.
+	 */
+	private final int generationBits;
+
+	/**
+	 * Number of lower bits used as index.
+	 */
+	private final int indexBits;
+
+	/**
+	 * Mask that extracts the index from an ID.
+	 */
+	private final int indexMask;
+
+	/**
+	 * Contains a set bit for every reserved index, offset by <tt>firstId</tt>.
+	 */
+	private final BitSet reservedSlots;
+
+	/**
+	 * Contains reserved IDs that can not be tracked in <tt>reservedSlots</tt>,
+	 * for example negative IDs reserved as markers.
+	 */
+	private final Set<Integer> reservedOther;
+
+	/**
+	 * Current generation of every index, <tt>null</tt> if generations are
+	 * disabled.
 	 */
-	private final Collection<Integer> reservedIds;
+	private int[] generations;
 
 	/**
-	 * Next ID to be generated (if not in use).
+	 * Ring buffer containing released indices in the order in which they were
+	 * released. May contain indices that have been reserved explicitly since
+	 * then, these are skipped.
+	 */
+	private int[] free;
+
+	/**
+	 * Position of the oldest element in <tt>free</tt>.
+	 */
+	private int freeHead;
+
+	/**
+	 * Number of elements in <tt>free</tt>.
+	 */
+	private int freeSize;
+
+	/**
+	 * Next index that has never been handed out (if not in use).
 	 */
 	private int nextId;
 
+	/**
+	 * <tt>true</tt> once every index up to the maximum index has been handed
+	 * out at least once, so only the free list is left.
+	 */
+	private boolean exhausted;
+
 	/**
 	 * Creates a new <tt>IdGenerator</tt> that will use
 	 * <tt>DEFAULT_FIRST_ID</tt> as first returned ID.
@@ -79,73 +152,253 @@ public class IdGenerator {
 	 *            first id to be returned by <tt>generateAndReserve</tt>
 	 */
 	public IdGenerator(int firstId) {
+		this(firstId, 0);
+	}
+
+	/**
+	 * Creates a new <tt>IdGenerator</tt> that uses a number of upper bits of
+	 * every generated ID as generation counter.
+	 * 
+	 * @param firstId
+	 *            first id to be returned by <tt>generateAndReserve</tt>, must
+	 *            not be negative if <tt>generationBits</tt> is not 0
+	 * @param generationBits
+	 *            number of bits used for the generation counter, between 0
+	 *            (disabled) and 16
+	 * @throws IllegalArgumentException
+	 *             if <tt>generationBits</tt> is out of range or
+	 *             <tt>firstId</tt> does not fit into the remaining bits
+	 */
+	public IdGenerator(int firstId, int generationBits) {
+		if (generationBits < 0 || generationBits > 16) {
+			throw new IllegalArgumentException("Invalid generation bits: "
+					+ generationBits);
+		}
+		this.generationBits = generationBits;
+		if (generationBits == 0) {
+			indexBits = 32;
+			indexMask = -1;
+		} else {
+			indexBits = 31 - generationBits;
+			indexMask = (1 << indexBits) - 1;
+			if (firstId < 0 || firstId > indexMask) {
+				throw new IllegalArgumentException("First ID " + firstId
+						+ " does not fit into " + indexBits + " bits.");
+			}
+			generations = new int[INITIAL_FREE_CAPACITY];
+		}
+		this.firstId = firstId;
 		nextId = firstId;
-		reservedIds = new HashSet<Integer>();
+		reservedSlots = new BitSet();
+		reservedOther = new HashSet<Integer>();
+		free = new int[INITIAL_FREE_CAPACITY];
 	}
 
 	/**
 	 * Sets the next ID that will be returned by the method
-	 * <tt>generateAndReserve</tt>.
+	 * <tt>generateAndReserve</tt> once there are no released IDs left.
 	 * 
 	 * @param nextId
 	 *            the next value that will be returned and reserved by
 	 *            <tt>generateAndReserve</tt>
 	 * @throws IllegalStateException
 	 *             if <tt>nextId</tt> is already reserved
+	 * @throws IllegalArgumentException
+	 *             if <tt>nextId</tt> can not be generated by this
+	 *             <tt>IdGenerator</tt>
 	 */
 	public void setNextId(int nextId) throws IllegalStateException {
-		if (reservedIds.contains(nextId)) {
+		if (isReserved(nextId)) {
 			throw new IllegalStateException("Id " + nextId + " already taken.");
 		}
-		this.nextId = nextId;
+		if (slot(nextId) < 0) {
+			throw new IllegalArgumentException("Id " + nextId
+					+ " can not be generated.");
+		}
+		this.nextId = getIndex(nextId);
+		exhausted = false;
 	}
 
 	/**
-	 * Returns and reserves the next free ID. Next in this case means the next
-	 * <tt>int</tt> greater than the value previously returned by this method
-	 * that is still free or the smallest free ID if an overflow occurs when
-	 * searching for the next free ID.
+	 * Returns and reserves the next free ID. Released IDs are returned first,
+	 * in the order in which they were released. If there are none, the next
+	 * <tt>int</tt> greater than the value previously generated that is still
+	 * free will be returned.
 	 * 
 	 * @return the next free ID
 	 * @throws IllegalStateException
 	 *             if there are no free IDs left
 	 */
 	public int generateAndReserve() {
-		int guardian = nextId;
-		while (reservedIds.contains(nextId)) {
-			if (++nextId == guardian) {
-				throw new IllegalStateException("All IDs taken");
+		while (freeSize > 0) {
+			int index = free[freeHead];
+			freeHead = (freeHead + 1) % free.length;
+			freeSize--;
+			if (!reservedSlots.get(index - firstId)) {
+				if (generations != null) {
+					generations[index] = (generations[index] + 1)
+							& ((1 << generationBits) - 1);
+				}
+				return take(index);
 			}
 		}
-		reserve(nextId);
-		return nextId;
+		while (!exhausted) {
+			int index = nextId;
+			if (index == (generations == null ? Integer.MAX_VALUE : indexMask)) {
+				exhausted = true;
+			} else {
+				nextId++;
+			}
+			if (!reservedSlots.get(index - firstId)) {
+				return take(index);
+			}
+		}
+		throw new IllegalStateException("All IDs taken");
 	}
 
 	/**
 	 * Indicates that an ID is no longer used, freeing it for future calls of
-	 * <tt>generateAndReserve</tt>.
+	 * <tt>generateAndReserve</tt>. Does nothing if <tt>id</tt> is not
+	 * reserved, for example because its generation is outdated.
 	 * 
 	 * @param id
 	 *            the ID that is no longer in use
 	 */
 	public void release(int id) {
-		reservedIds.remove(id);
+		if (!isReserved(id)) {
+			return;
+		}
+		int slot = slot(id);
+		if (slot < 0) {
+			reservedOther.remove(Integer.valueOf(id));
+			return;
+		}
+		reservedSlots.clear(slot);
+		if (freeSize == free.length) {
+			int[] grown = new int[free.length * 2];
+			for (int i = 0; i < freeSize; i++) {
+				grown[i] = free[(freeHead + i) % free.length];
+			}
+			free = grown;
+			freeHead = 0;
+		}
+		free[(freeHead + freeSize++) % free.length] = getIndex(id);
 	}
 
 	/**
 	 * Explicitly reserves a single ID. This ID will no longer be considered
 	 * when searching for free IDs until it is released.
 	 * 
+	 * If generations are enabled, then the generation of <tt>id</tt> becomes
+	 * the current generation of its index.
+	 * 
 	 * @param id
 	 *            the ID to reserve
 	 * @throws IllegalStateException
-	 *             if <tt>id</tt> is already reserved
+	 *             if <tt>id</tt> or another ID with the same index is already
+	 *             reserved
 	 */
 	public void reserve(int id) {
-		if (reservedIds.contains(id)) {
+		int slot = slot(id);
+		if (slot < 0) {
+			if (!reservedOther.add(Integer.valueOf(id))) {
+				throw new IllegalStateException("ID " + id + " already taken.");
+			}
+			return;
+		}
+		if (reservedSlots.get(slot)) {
 			throw new IllegalStateException("ID " + id + " already taken.");
 		}
-		reservedIds.add(id);
+		reservedSlots.set(slot);
+		if (generations != null) {
+			int index = getIndex(id);
+			ensureGenerations(index);
+			generations[index] = id >>> indexBits;
+		}
+	}
+
+	/**
+	 * Checks whether an ID is currently reserved. If generations are enabled,
+	 * then an ID of which the index is reserved, but with another generation,
+	 * is not considered reserved.
+	 * 
+	 * @param id
+	 *            the ID to check
+	 * @return <tt>true</tt> if <tt>id</tt> is reserved, <tt>false</tt>
+	 *         otherwise
+	 */
+	public boolean isReserved(int id) {
+		int slot = slot(id);
+		if (slot < 0) {
+			return reservedOther.contains(Integer.valueOf(id));
+		}
+		if (!reservedSlots.get(slot)) {
+			return false;
+		}
+		return generations == null
+				|| generations[getIndex(id)] == id >>> indexBits;
+	}
+
+	/**
+	 * @param id
+	 *            an ID generated by this <tt>IdGenerator</tt>
+	 * @return the part of <tt>id</tt> that is not used as generation counter;
+	 *         equal to <tt>id</tt> if generations are disabled
+	 */
+	public int getIndex(int id) {
+		return id & indexMask;
+	}
+
+	/**
+	 * @return number of upper bits of every ID used as generation counter, 0
+	 *         if generations are disabled
+	 */
+	public int getGenerationBits() {
+		return generationBits;
+	}
+
+	/**
+	 * Reserves an index and builds the ID for it.
+	 * 
+	 * @param index
+	 *            the free index to reserve
+	 * @return the ID for <tt>index</tt> in its current generation
+	 */
+	private int take(int index) {
+		reservedSlots.set(index - firstId);
+		if (generations == null) {
+			return index;
+		}
+		ensureGenerations(index);
+		return (generations[index] << indexBits) | index;
+	}
+
+	/**
+	 * @param id
+	 *            any ID
+	 * @return the position of <tt>id</tt> in <tt>reservedSlots</tt> or
+	 *         <tt>-1</tt> if it is tracked in <tt>reservedOther</tt>
+	 */
+	private int slot(int id) {
+		if (generations != null && id < 0) {
+			return -1;
+		}
+		int index = getIndex(id);
+		return index < firstId ? -1 : index - firstId;
+	}
+
+	/**
+	 * Grows <tt>generations</tt> so that it contains a given index.
+	 * 
+	 * @param index
+	 *            the index that must fit into <tt>generations</tt>
+	 */
+	private void ensureGenerations(int index) {
+		if (index >= generations.length) {
+			int[] grown = new int[Math.max(index + 1, generations.length * 2)];
+			System.arraycopy(generations, 0, grown, 0, generations.length);
+			generations = grown;
+		}
 	}
 
 }
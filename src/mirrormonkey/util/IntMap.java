@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2011, 2012, Philipp Christian Loewner
+ * All rights reserved.
+ * 
+ * Disclaimer:
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the
+ * distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * This software uses parts of:
+ * jMonkeyEngine
+ * Copyright (c) 2009-2010 jMonkeyEngine
+ * All rights reserved.
+ * 
+ * For jMonkeyEngine, the same disclaimer as printed above applies.
+ */
+
+package mirrormonkey.util;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Maps primitive <tt>int</tt> keys to values without boxing.
+ * 
+ * Keys and values are stored densely in two parallel arrays, so iterating over
+ * all values touches contiguous memory only. An open-addressing table with
+ * linear probing maps keys to their position in the dense arrays. Removing an
+ * entry moves the last entry into the freed position, so the order of
+ * iteration is not stable across removals.
+ * 
+ * @author Philipp Christian Loewner
+ * 
+ * @param <V>
+ *            the class of the values
+ */
+public class IntMap<V> {
+
+	/**
+	 * Marks a free slot in the index table.
+	 */
+	private static final int FREE = -1;
+
+	/**
+	 * Initial number of dense entries.
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * Keys of all entries, positions <tt>0</tt> to <tt>size - 1</tt> are used.
+	 */
+	private int[] keys;
+
+	/**
+	 * Values of all entries, in the same order as <tt>keys</tt>.
+	 */
+	private Object[] values;
+
+	/**
+	 * Number of entries.
+	 */
+	private int size;
+
+	/**
+	 * Open-addressing table that contains the dense position of every entry
+	 * or <tt>FREE</tt>. Its length is always a power of two.
+	 */
+	private int[] index;
+
+	/**
+	 * <tt>index.length - 1</tt>.
+	 */
+	private int mask;
+
+	/**
+	 * Read-only view of the values of this <tt>IntMap</tt>.
+	 */
+	private final Collection<V> valueView;
+
+	/**
+	 * Creates a new, empty <tt>IntMap</tt>.
+	 */
+	public IntMap() {
+		keys = new int[INITIAL_CAPACITY];
+		values = new Object[INITIAL_CAPACITY];
+		createIndex(INITIAL_CAPACITY * 2);
+		valueView = new ValueView();
+	}
+
+	/**
+	 * @param key
+	 *            the key to look up
+	 * @return the value stored for <tt>key</tt> or <tt>null</tt> if there is
+	 *         none
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		int pos = index[findSlot(key)];
+		return pos == FREE ? null : (V) values[pos];
+	}
+
+	/**
+	 * @param key
+	 *            the key to look up
+	 * @return <tt>true</tt> if a value is stored for <tt>key</tt>
+	 */
+	public boolean containsKey(int key) {
+		return index[findSlot(key)] != FREE;
+	}
+
+	/**
+	 * Stores a value for a key, replacing any previous value.
+	 * 
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value to store for <tt>key</tt>
+	 * @return the previous value for <tt>key</tt> or <tt>null</tt> if there
+	 *         was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+		int slot = findSlot(key);
+		int pos = index[slot];
+		if (pos != FREE) {
+			V old = (V) values[pos];
+			values[pos] = value;
+			return old;
+		}
+		if (size == keys.length) {
+			int[] grownKeys = new int[keys.length * 2];
+			System.arraycopy(keys, 0, grownKeys, 0, size);
+			keys = grownKeys;
+			Object[] grownValues = new Object[values.length * 2];
+			System.arraycopy(values, 0, grownValues, 0, size);
+			values = grownValues;
+		}
+		keys[size] = key;
+		values[size] = value;
+		index[slot] = size++;
+		if (size * 4 > index.length * 3) {
+			createIndex(index.length * 2);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the value stored for a key.
+	 * 
+	 * @param key
+	 *            the key
+	 * @return the removed value or <tt>null</tt> if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key) {
+		int slot = findSlot(key);
+		int pos = index[slot];
+		if (pos == FREE) {
+			return null;
+		}
+		V old = (V) values[pos];
+		freeSlot(slot);
+		int last = --size;
+		if (pos != last) {
+			keys[pos] = keys[last];
+			values[pos] = values[last];
+			index[findSlot(keys[pos])] = pos;
+		}
+		values[last] = null;
+		return old;
+	}
+
+	/**
+	 * Removes every entry.
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			values[i] = null;
+		}
+		for (int i = 0; i < index.length; i++) {
+			index[i] = FREE;
+		}
+		size = 0;
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return <tt>true</tt> if there are no entries
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return a read-only view of all values that reflects later changes
+	 */
+	public Collection<V> values() {
+		return valueView;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder b = new StringBuilder("{");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				b.append(", ");
+			}
+			b.append(keys[i]).append('=').append(values[i]);
+		}
+		return b.append('}').toString();
+	}
+
+	/**
+	 * Spreads sequential keys over the index table.
+	 * 
+	 * @param key
+	 *            the key to hash
+	 * @return the hash of <tt>key</tt>
+	 */
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @param key
+	 *            the key to look up
+	 * @return the slot in <tt>index</tt> that contains the position of
+	 *         <tt>key</tt> or the free slot where it would be inserted
+	 */
+	private int findSlot(int key) {
+		int slot = hash(key) & mask;
+		int pos;
+		while ((pos = index[slot]) != FREE && keys[pos] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Frees a slot in <tt>index</tt> and shifts back following entries of the
+	 * same probe sequence so that lookups never stop at a gap too early.
+	 * 
+	 * @param slot
+	 *            the slot to free
+	 */
+	private void freeSlot(int slot) {
+		int gap = slot;
+		int next = slot;
+		while (true) {
+			next = (next + 1) & mask;
+			int pos = index[next];
+			if (pos == FREE) {
+				break;
+			}
+			int home = hash(keys[pos]) & mask;
+			boolean reachable = gap <= next ? gap < home && home <= next
+					: gap < home || home <= next;
+			if (!reachable) {
+				index[gap] = pos;
+				gap = next;
+			}
+		}
+		index[gap] = FREE;
+	}
+
+	/**
+	 * Replaces <tt>index</tt> with a new table of a given length and inserts
+	 * every entry again.
+	 * 
+	 * @param length
+	 *            the new length, must be a power of two
+	 */
+	private void createIndex(int length) {
+		index = new int[length];
+		mask = length - 1;
+		for (int i = 0; i < length; i++) {
+			index[i] = FREE;
+		}
+		for (int i = 0; i < size; i++) {
+			index[findSlot(keys[i])] = i;
+		}
+	}
+
+	/**
+	 * Read-only view of the values of the enclosing <tt>IntMap</tt>.
+	 * 
+	 * @author Philipp Christian Loewner
+	 * 
+	 */
+	private final class ValueView extends AbstractCollection<V> {
+
+		@Override
+		public Iterator<V> iterator() {
+			return new Iterator<V>() {
+
+				/**
+				 * Dense position of the next value.
+				 */
+				private int next;
+
+				public boolean hasNext() {
+					return next < size;
+				}
+
+				@SuppressWarnings("unchecked")
+				public V next() {
+					if (next >= size) {
+						throw new NoSuchElementException();
+					}
+					return (V) values[next++];
+				}
+
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+	}
+
+}
@@ -37,11 +37,14 @@
 
 package mirrormonkey.util.listeners;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Some subsystems provide listener interfaces that the core and / or framework
@@ -58,6 +61,13 @@ import java.util.Map;
  */
 public final class ListenerConfiguration {
 
+	/**
+	 * Caches the result of <tt>recursiveListenerScan</tt> for every listener
+	 * class, as scanning the interface hierarchy reflectively is expensive and
+	 * listeners are added and removed frequently.
+	 */
+	private static final Map<Class<?>, Class<?>[]> SCAN_CACHE = new WeakHashMap<Class<?>, Class<?>[]>();
+
 	/**
 	 * Added listeners, mapped by their listener interface classes. To which
 	 * classes the listeners are mapped can be influenced by the
@@ -65,26 +75,42 @@ public final class ListenerConfiguration {
 	 * 
 	 * This can be <tt>null</tt> if there is no listener added at all.
 	 */
-	private Map<Class<?>, List<ManagedListener>> listenerCollections;
+	private Map<Class<?>, ListenerSet> listenerCollections;
+
+	/**
+	 * Incremented whenever a listener is added or removed, so that callers can
+	 * cache results of <tt>getListeners</tt>.
+	 */
+	private int version;
 
 	/**
-	 * Returns a <tt>Collection</tt> of every <tt>Class</tt> representing any
-	 * interface implemented by <tt>clazz</tt> or superinterface thereof that is
-	 * annotated with <tt>MapListener</tt>.
+	 * Returns every <tt>Class</tt> representing any interface implemented by
+	 * <tt>clazz</tt> or superinterface thereof that is annotated with
+	 * <tt>MapListener</tt>. The result is computed once per class.
 	 * 
 	 * @param clazz
 	 *            the interface hierarchy implemented by this <tt>Class</tt> is
 	 *            parsed
-	 * @return a <tt>Collection</tt> of every <tt>Class</tt> representing an
-	 *         interface in the interface hierarchy implemented by
-	 *         <tt>clazz</tt> that is annotated with <tt>MapListener</tt>
+	 * @return an array of every <tt>Class</tt> representing an interface in
+	 *         the interface hierarchy implemented by <tt>clazz</tt> that is
+	 *         annotated with <tt>MapListener</tt>
 	 */
-	private final List<Class<?>> recursiveListenerScan(final Class<?> clazz) {
-		final List<Class<?>> cc = new LinkedList<Class<?>>();
+	private static final Class<?>[] recursiveListenerScan(final Class<?> clazz) {
+		synchronized (SCAN_CACHE) {
+			Class<?>[] cached = SCAN_CACHE.get(clazz);
+			if (cached != null) {
+				return cached;
+			}
+		}
+		final List<Class<?>> cc = new ArrayList<Class<?>>();
 		for (Class<?> i = clazz; !i.equals(Object.class); i = i.getSuperclass()) {
 			recursiveListenerScan(i, cc);
 		}
-		return cc;
+		Class<?>[] result = cc.toArray(new Class<?>[cc.size()]);
+		synchronized (SCAN_CACHE) {
+			SCAN_CACHE.put(clazz, result);
+		}
+		return result;
 	}
 
 	/**
@@ -99,7 +125,7 @@ public final class ListenerConfiguration {
 	 *            <tt>iface's</tt> inheritance hierarchy that is annotated with
 	 *            <tt>MapListener</tt>
 	 */
-	private final void recursiveListenerScan(final Class<?> iface,
+	private static final void recursiveListenerScan(final Class<?> iface,
 			final Collection<Class<?>> classes) {
 		for (Class<?> i : iface.getInterfaces()) {
 			recursiveListenerScan(i, classes);
@@ -142,14 +168,15 @@ public final class ListenerConfiguration {
 	 */
 	private final void addListener(Class<?> iface, ManagedListener listener) {
 		if (listenerCollections == null) {
-			listenerCollections = new HashMap<Class<?>, List<ManagedListener>>();
+			listenerCollections = new HashMap<Class<?>, ListenerSet>();
 		}
-		List<ManagedListener> listeners = listenerCollections.get(iface);
+		ListenerSet listeners = listenerCollections.get(iface);
 		if (listeners == null) {
-			listeners = new LinkedList<ManagedListener>();
+			listeners = new ListenerSet();
 			listenerCollections.put(iface, listeners);
 		}
 		listeners.add(listener);
+		version++;
 	}
 
 	/**
@@ -188,11 +215,12 @@ public final class ListenerConfiguration {
 		if (listenerCollections == null) {
 			return;
 		}
-		List<ManagedListener> listeners = listenerCollections.get(iface);
+		ListenerSet listeners = listenerCollections.get(iface);
 		if (listeners == null) {
 			return;
 		}
 		listeners.remove(listener);
+		version++;
 		if (listeners.isEmpty()) {
 			listenerCollections.remove(iface);
 			if (listenerCollections.isEmpty()) {
@@ -216,9 +244,11 @@ public final class ListenerConfiguration {
 		if (listenerCollections == null) {
 			return;
 		}
-		List<T> l = (List<T>) listenerCollections.get(listenerClass);
+		ListenerSet l = listenerCollections.get(listenerClass);
 		if (l != null) {
-			listeners.addAll(l);
+			for (ManagedListener i : l.snapshot()) {
+				listeners.add((T) i);
+			}
 		}
 	}
 
@@ -236,6 +266,109 @@ public final class ListenerConfiguration {
 	 */
 	public void clear() {
 		listenerCollections = null;
+		version++;
+	}
+
+	/**
+	 * @return a number that changes whenever a <tt>ManagedListener</tt> is
+	 *         added to or removed from this <tt>ListenerConfiguration</tt>
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Stores the listeners registered for a single listener interface.
+	 * 
+	 * Adding and removing listeners takes constant time. Readers get an array
+	 * snapshot that is only rebuilt after the set has been changed, so
+	 * iterating does not allocate and is not affected by listeners that add or
+	 * remove listeners while being notified.
+	 * 
+	 * @author Philipp Christian Loewner
+	 * 
+	 */
+	private static final class ListenerSet {
+
+		/**
+		 * Shared empty snapshot.
+		 */
+		private static final ManagedListener[] EMPTY = new ManagedListener[0];
+
+		/**
+		 * Maps every added listener to how often it has been added, in the
+		 * order in which listeners were added first.
+		 */
+		private final Map<ManagedListener, Integer> counts;
+
+		/**
+		 * Every listener as often as it has been added, or <tt>null</tt> if the
+		 * set has changed since the last snapshot.
+		 */
+		private ManagedListener[] snapshot;
+
+		/**
+		 * Creates a new, empty <tt>ListenerSet</tt>.
+		 */
+		ListenerSet() {
+			counts = new LinkedHashMap<ManagedListener, Integer>();
+			snapshot = EMPTY;
+		}
+
+		/**
+		 * @param listener
+		 *            the listener to add
+		 */
+		void add(ManagedListener listener) {
+			Integer count = counts.get(listener);
+			counts.put(listener,
+					Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+			snapshot = null;
+		}
+
+		/**
+		 * Removes a listener once.
+		 * 
+		 * @param listener
+		 *            the listener to remove
+		 */
+		void remove(ManagedListener listener) {
+			Integer count = counts.get(listener);
+			if (count == null) {
+				return;
+			}
+			if (count.intValue() == 1) {
+				counts.remove(listener);
+			} else {
+				counts.put(listener, Integer.valueOf(count.intValue() - 1));
+			}
+			snapshot = null;
+		}
+
+		/**
+		 * @return <tt>true</tt> if no listener is contained
+		 */
+		boolean isEmpty() {
+			return counts.isEmpty();
+		}
+
+		/**
+		 * @return every contained listener as often as it has been added, must
+		 *         not be modified
+		 */
+		ManagedListener[] snapshot() {
+			if (snapshot == null) {
+				List<ManagedListener> l = new ArrayList<ManagedListener>(
+						counts.size());
+				for (Map.Entry<ManagedListener, Integer> e : counts.entrySet()) {
+					l.addAll(Collections.nCopies(e.getValue().intValue(),
+							e.getKey()));
+				}
+				snapshot = l.toArray(new ManagedListener[l.size()]);
+			}
+			return snapshot;
+		}
+
 	}
 
 }